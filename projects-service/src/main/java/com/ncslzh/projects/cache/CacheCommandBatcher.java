@@ -0,0 +1,195 @@
+package com.ncslzh.projects.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Opt-in micro-batching of read commands for hot read paths.
+ *
+ * <p>Commands issued by many threads within a short window ({@link #WINDOW_NANOS}) or until {@link #MAX_BATCH_SIZE}
+ * commands are collected, are flushed to Redis as a single pipeline, and each caller's future is completed with its
+ * own reply. This trades up to one window of latency for far fewer round-trips under concurrency.
+ *
+ * <p>A single flusher thread drains a FIFO queue and flushes one pipeline at a time, so commands are sent in the
+ * order they were issued, which preserves per-key ordering.
+ *
+ * <p>Futures are completed on the flusher thread. Dependent stages doing real work should use the {@code *Async}
+ * variants so that they do not hold up the next flush.
+ *
+ * <p>Enable with {@code cache.batching.enabled=true}, which also routes {@link CacheServiceImpl#get(String)},
+ * {@link CacheServiceImpl#hashGet(String, String)} and {@link CacheServiceImpl#zScore(String, String)} through here.
+ */
+@Slf4j
+@Component
+public class CacheCommandBatcher {
+
+    private static final long WINDOW_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int MAX_BATCH_SIZE = 64;
+    /**
+     * Once this many commands are waiting, new commands are sent directly instead of queueing up behind them
+     */
+    private static final int MAX_PENDING = 10_000;
+
+    @Autowired
+    protected StringRedisTemplate stringRedisTemplate;
+
+    @Getter
+    @Value("${cache.batching.enabled:false}")
+    private boolean enabled;
+
+    private final BlockingQueue<PendingCommand<?>> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+    private volatile boolean running;
+    private Thread flusher;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "cache-command-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("[CacheCommandBatcher] Started with windowNanos={}, maxBatchSize={}", WINDOW_NANOS, MAX_BATCH_SIZE);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(1));
+        // Anything enqueued after the flusher exited
+        List<PendingCommand<?>> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+    }
+
+    public CompletableFuture<String> get(String key) {
+        return submit(connection -> connection.get(key), String.class::cast);
+    }
+
+    public CompletableFuture<String> hashGet(String key, String hashKey) {
+        return submit(connection -> connection.hGet(key, hashKey), String.class::cast);
+    }
+
+    public CompletableFuture<Double> zScore(String key, String member) {
+        return submit(connection -> connection.zScore(key, member), Double.class::cast);
+    }
+
+    private <R> CompletableFuture<R> submit(Consumer<StringRedisConnection> command, Function<Object, R> resultMapper) {
+        PendingCommand<R> pendingCommand = new PendingCommand<>(command, resultMapper, new CompletableFuture<>());
+        if (!running || !pending.offer(pendingCommand)) {
+            flush(List.of(pendingCommand));
+        }
+        return pendingCommand.getFuture();
+    }
+
+    private void flushLoop() {
+        try {
+            drainLoop();
+        } finally {
+            // Commands are sent directly from now on, and nothing is left waiting on a flusher that is gone
+            running = false;
+            List<PendingCommand<?>> remaining = new ArrayList<>();
+            pending.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                log.warn("[CacheCommandBatcher] Flusher stopped, failing pendingCommands={}", remaining.size());
+                IllegalStateException e = new IllegalStateException("Cache command batcher stopped");
+                remaining.forEach(pendingCommand -> pendingCommand.getFuture().completeExceptionally(e));
+            }
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingCommand<?>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingCommand<?> first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + WINDOW_NANOS;
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    PendingCommand<?> next = remainingNanos > 0
+                            ? pending.poll(remainingNanos, TimeUnit.NANOSECONDS)
+                            : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("[CacheCommandBatcher] Unexpected exception in flush loop, e={}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingCommand<?>> batch) {
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringRedisConnection = (StringRedisConnection) connection;
+                for (PendingCommand<?> pendingCommand : batch) {
+                    pendingCommand.getCommand().accept(stringRedisConnection);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("[CacheCommandBatcher] Pipeline failed for batchSize={}, e={}", batch.size(), e.getMessage());
+            batch.forEach(pendingCommand -> pendingCommand.getFuture().completeExceptionally(e));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(results.get(i));
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class PendingCommand<R> {
+        private final Consumer<StringRedisConnection> command;
+        private final Function<Object, R> resultMapper;
+        private final CompletableFuture<R> future;
+
+        private void complete(Object result) {
+            try {
+                future.complete(result == null ? null : resultMapper.apply(result));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
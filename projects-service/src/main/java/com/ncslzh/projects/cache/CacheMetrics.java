@@ -0,0 +1,231 @@
+package com.ncslzh.projects.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer instrumentation for {@link CacheServiceImpl} and {@link RefreshableCacheServiceImpl}, tagged by
+ * {@code keyspace} (the key up to the first {@code ':'}) so that TTLs and refresh windows can be tuned per use case.
+ * Only the first {@link #MAX_KEYSPACES} keyspaces seen get their own tag, later ones are tagged {@code other}, so that a
+ * key without a fixed prefix cannot grow the number of meters without bound.
+ *
+ * <ul>
+ *   <li>{@code cache.requests} - reads through a supplier, tagged {@code result=hit|miss|stale|negative}
+ *   <li>{@code cache.load} - supplier load latency
+ *   <li>{@code cache.redis} - Redis command latency, tagged {@code op}
+ *   <li>{@code cache.payload.size} - value sizes in chars, tagged {@code op}
+ *   <li>{@code cache.refresh.queue.depth} - asynchronous refreshes submitted but not yet completed
+ * </ul>
+ *
+ * Redis commands slower than {@link #SLOW_COMMAND_THRESHOLD} are kept in {@link #getRecentSlowKeys()}.
+ */
+@Component
+public class CacheMetrics {
+
+    private static final String KEYSPACE_DELIMITER = ":";
+    private static final String NO_KEYSPACE = "none";
+    private static final String OTHER_KEYSPACE = "other";
+    /** Commands over keys of different keyspaces, e.g. {@code multiGet} */
+    private static final String MIXED_KEYSPACE = "mixed";
+    private static final int MAX_KEYSPACES = 64;
+    private static final Duration SLOW_COMMAND_THRESHOLD = Duration.ofMillis(50);
+    private static final int MAX_RECENT_SLOW_KEYS = 100;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Meters are cached as building them on every call allocates and looks up the registry
+     */
+    private final Map<String, Counter> requestCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> loadTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> commandTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> payloadSummaries = new ConcurrentHashMap<>();
+
+    private final Set<String> keyspaces = ConcurrentHashMap.newKeySet();
+
+    private final Deque<SlowKey> recentSlowKeys = new ConcurrentLinkedDeque<>();
+
+    public void recordHit(String key) {
+        recordRequest(key, "hit");
+    }
+
+    public void recordMiss(String key) {
+        recordRequest(key, "miss");
+    }
+
+    /**
+     * A value past its refresh time was served while it is being refreshed
+     */
+    public void recordStale(String key) {
+        recordRequest(key, "stale");
+    }
+
+    /**
+     * A negatively cached miss was served
+     */
+    public void recordNegativeHit(String key) {
+        recordRequest(key, "negative");
+    }
+
+    public <T> T recordLoad(String key, Supplier<T> supplier) {
+        String keyspace = keyspaceOf(key);
+        Timer timer = loadTimers.computeIfAbsent(keyspace, k -> Timer.builder("cache.load")
+                .description("Supplier load latency on cache miss or refresh")
+                .tag("keyspace", k)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <T> T recordCommand(String op, String key, Supplier<T> command) {
+        return recordCommand(op, keyspaceOf(key), key, command);
+    }
+
+    /**
+     * For commands over many keys, tagged with their keyspace if they share one, else {@code mixed}
+     */
+    public <T> T recordCommand(String op, Collection<String> keys, Supplier<T> command) {
+        String keyspace = null;
+        for (String key : keys) {
+            String keyKeyspace = keyspaceOf(key);
+            if (keyspace == null) {
+                keyspace = keyKeyspace;
+            } else if (!keyspace.equals(keyKeyspace)) {
+                keyspace = MIXED_KEYSPACE;
+                break;
+            }
+        }
+        String firstKey = keys.isEmpty() ? null : keys.iterator().next();
+        return recordCommand(op, keyspace == null ? NO_KEYSPACE : keyspace, firstKey, command);
+    }
+
+    /**
+     * @param key recorded as slow key, for commands over many keys the first of them
+     */
+    private <T> T recordCommand(String op, String keyspace, String key, Supplier<T> command) {
+        Timer timer = commandTimers.computeIfAbsent(keyspace + KEYSPACE_DELIMITER + op, k -> Timer.builder("cache.redis")
+                .description("Redis command latency")
+                .tag("keyspace", keyspace)
+                .tag("op", op)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+
+        long start = System.nanoTime();
+        try {
+            return command.get();
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            if (elapsedNanos >= SLOW_COMMAND_THRESHOLD.toNanos()) {
+                recordSlowKey(new SlowKey(key, op, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), System.currentTimeMillis()));
+            }
+        }
+    }
+
+    public void recordPayloadSize(String op, String key, String value) {
+        if (value == null) {
+            return;
+        }
+        String keyspace = keyspaceOf(key);
+        payloadSummaries.computeIfAbsent(keyspace + KEYSPACE_DELIMITER + op, k -> DistributionSummary.builder("cache.payload.size")
+                        .description("Size of cached values in chars")
+                        .baseUnit("chars")
+                        .tag("keyspace", keyspace)
+                        .tag("op", op)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(value.length());
+    }
+
+    public <T> void registerRefreshQueue(T stateObject, ToDoubleFunction<T> depthFunction) {
+        Gauge.builder("cache.refresh.queue.depth", stateObject, depthFunction)
+                .description("Asynchronous key refreshes submitted but not yet completed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return most recent slow Redis commands, latest first
+     */
+    public List<SlowKey> getRecentSlowKeys() {
+        return new ArrayList<>(recentSlowKeys);
+    }
+
+    private void recordRequest(String key, String result) {
+        String keyspace = keyspaceOf(key);
+        requestCounters.computeIfAbsent(keyspace + KEYSPACE_DELIMITER + result, k -> Counter.builder("cache.requests")
+                        .description("Cache reads through a supplier")
+                        .tag("keyspace", keyspace)
+                        .tag("result", result)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private void recordSlowKey(SlowKey slowKey) {
+        recentSlowKeys.addFirst(slowKey);
+        while (recentSlowKeys.size() > MAX_RECENT_SLOW_KEYS) {
+            recentSlowKeys.pollLast();
+        }
+    }
+
+    /**
+     * Only the first segment is used to keep tag cardinality bounded, e.g. {@code user:123:profile -> user}, and only
+     * for the first {@link #MAX_KEYSPACES} keyspaces, as keys may not all start with a fixed prefix
+     */
+    String keyspaceOf(String key) {
+        if (key == null) {
+            return NO_KEYSPACE;
+        }
+        int index = key.indexOf(KEYSPACE_DELIMITER);
+        if (index <= 0) {
+            return NO_KEYSPACE;
+        }
+        String keyspace = key.substring(0, index);
+        if (keyspaces.contains(keyspace)) {
+            return keyspace;
+        }
+        // Racing threads may go slightly over the limit, which only adds a few meters
+        if (keyspaces.size() < MAX_KEYSPACES) {
+            keyspaces.add(keyspace);
+            return keyspace;
+        }
+        return OTHER_KEYSPACE;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class SlowKey {
+        private final String key;
+        private final String op;
+        private final long elapsedMillis;
+        private final long timestamp;
+    }
+}
@@ -1,5 +1,6 @@
 package com.ncslzh.projects.cache;
 
+import com.ncslzh.projects.bloomfilter.BloomFilter;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ZSetOperations;
 
@@ -10,6 +11,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Redis String based cache
@@ -21,12 +23,28 @@ public interface CacheService {
 
     <T> T getCastedString(String key, Class<T> targetCastClass);
 
+    /**
+     * Returns the cached value, otherwise loads it from {@code supplier} and caches it for {@code expireSeconds}.
+     * <p>If {@code supplier} returns {@code null}, the miss itself is cached for a short time (negative caching), and
+     * {@code null} is returned without calling {@code supplier} until it expires.
+     */
     <T> T get(String key, int expireSeconds, Class<T> clazz, Supplier<T> supplier);
 
+    /**
+     * Same as above, but on a cache miss {@code supplier} is only called if {@code id} might exist in
+     * {@code existenceFilter} (e.g. {@code userIdBloomFilter}). Ids that definitely do not exist are negatively cached.
+     */
+    <T, K> T get(String key, int expireSeconds, Class<T> clazz, BloomFilter<K> existenceFilter, K id, Supplier<T> supplier);
+
     Long increment(String key);
 
     void set(String key, String value);
 
+    /**
+     * {@code duration} is adjusted by the {@link ExpiryPolicy} configured for the key's prefix, if any. This applies to
+     * every TTL set through this service, including {@link #get(String, int, Class, Supplier)} and
+     * {@link #list(String, int, Class, Supplier)}
+     */
     void set(String key, String value, Duration duration);
 
     Boolean setIfAbsent(String key, String value, Duration duration);
@@ -57,12 +75,40 @@ public interface CacheService {
 
     Long hashGetSize(String key);
 
+    /**
+     * Fetches the whole hash in one reply, prefer {@link #scanValues(String, long)} for large hashes
+     */
     List<Object> values(String key);
 
+    /**
+     * Fetches the whole hash in one reply, prefer {@link #scanEntries(String, long)} for large hashes
+     */
     Map<String, String> entries(String key);
 
+    /**
+     * Fetches the whole hash in one reply, prefer {@link #scanHashKeys(String, long)} for large hashes
+     */
     Set<Object> keys(String key);
 
+    /**
+     * Lazily streams the entries of hash {@code key} using HSCAN, fetching about {@code count} entries per round-trip.
+     * The next batch is only fetched once the consumer has pulled the previous one, so memory use stays constant.
+     *
+     * <p>The stream holds a Redis connection until closed, so always use it in a try-with-resources block.
+     * <br>As with HSCAN, entries added or removed during the scan may or may not be returned.
+     */
+    Stream<Map.Entry<String, String>> scanEntries(String key, long count);
+
+    /**
+     * See {@link #scanEntries(String, long)}
+     */
+    Stream<String> scanHashKeys(String key, long count);
+
+    /**
+     * See {@link #scanEntries(String, long)}
+     */
+    Stream<String> scanValues(String key, long count);
+
     Double zScore(String key, String member);
 
     Set<String> zRangeByScore(String key, Long start, Long end);
@@ -104,8 +150,17 @@ public interface CacheService {
 
     Set<ZSetOperations.TypedTuple<String>> zIntersectWithScores(String key, String otherKey);
 
+    /**
+     * Fetches the whole range in one reply, prefer {@link #scanZSet(String, long)} to go through large sorted sets
+     */
     Set<String> zSetRange(String key, Long start, Long end);
 
+    /**
+     * Lazily streams the members and scores of sorted set {@code key} using ZSCAN. Members are not in score order.
+     * <br>See {@link #scanEntries(String, long)} for the streaming and closing semantics.
+     */
+    Stream<ZSetOperations.TypedTuple<String>> scanZSet(String key, long count);
+
     void leftPush(String key, String value);
 
     void leftPushAll(String key, List<String> lst);
@@ -118,13 +173,25 @@ public interface CacheService {
 
     void renameKey(String oldKey, String newKey);
 
+    /**
+     * Same as {@link #get(String, int, Class, Supplier)}, where an empty or {@code null} list from {@code supplier} is
+     * negatively cached
+     */
     <T> List<T> list(String key, int expireSeconds, Class<T> clazz, Supplier<List<T>> supplier);
 
 
 
     // Set operation in redis
     void addSet(String key, String... values);
+    /**
+     * Fetches the whole set in one reply, prefer {@link #scanSet(String, long)} for large sets
+     */
     Set<String> getSet(String key);
+    /**
+     * Lazily streams the members of set {@code key} using SSCAN.
+     * <br>See {@link #scanEntries(String, long)} for the streaming and closing semantics.
+     */
+    Stream<String> scanSet(String key, long count);
     Long removeSet(String key, Object... values);
     Set<String> intersectSet(String baseKey, String key);
 
@@ -1,16 +1,20 @@
 package com.ncslzh.projects.cache;
 
 import com.alibaba.fastjson2.JSON;
+import com.ncslzh.projects.bloomfilter.BloomFilter;
+import com.ncslzh.projects.cache.hotkey.HotKeyDetector;
 import com.ncslzh.projects.placeholders.DistributedLock;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.redis.connection.DataType;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.ListOperations;
 import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
@@ -24,29 +28,73 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Slf4j
 @Component
 public class CacheServiceImpl implements CacheService {
 
+    /**
+     * Marker for a cached supplier miss. JSON values can never start with a NUL character.
+     * <br>Shared with {@link ReactiveCacheServiceImpl}, every read path returns it as a missing value
+     */
+    static final String TOMBSTONE = "\u0000";
+    /**
+     * Upper bound on waiting for a batched reply, so that callers never hang on a stalled flusher
+     */
+    private static final Duration BATCHED_TIMEOUT = Duration.ofSeconds(1);
+
     //    @Qualifier("StringRedisTemplate")
     @Autowired
     protected StringRedisTemplate stringRedisTemplate;
     @Resource
     protected DistributedLock distributedLock;
+    @Resource
+    protected CacheCommandBatcher cacheCommandBatcher;
+    @Resource
+    protected HotKeyDetector hotKeyDetector;
+    @Resource
+    protected CacheMetrics cacheMetrics;
+    @Resource
+    protected ExpiryPolicyResolver expiryPolicyResolver;
 
     @Override
     public String get(String key) {
-        return getValueOps().get(key);
+        String value = getRaw(key);
+        return isTombstone(value) ? null : value;
+    }
+
+    /**
+     * Same as {@link #get(String)}, but returns {@link #TOMBSTONE} as is
+     */
+    private String getRaw(String key) {
+        String localCopy = hotKeyDetector.getLocalCopy(key);
+        if (localCopy != null) {
+            return localCopy;
+        }
+
+        String value = cacheMetrics.recordCommand("get", key, () -> cacheCommandBatcher.isEnabled()
+                ? joinBatched(cacheCommandBatcher.get(key))
+                : getValueOps().get(key));
+        cacheMetrics.recordPayloadSize("get", key, value);
+        hotKeyDetector.recordAccess(key, value);
+        return value;
     }
 
     @Override
     public <T> T getCastedString(String key, Class<T> clazz) {
+        return cast(get(key), clazz);
+    }
+
+    private <T> T cast(String value, Class<T> clazz) {
         try {
-            String value = get(key);
             if (StringUtils.isNotBlank(value)) {
                 return JSON.parseObject(value, clazz);
             }
@@ -58,13 +106,21 @@ public class CacheServiceImpl implements CacheService {
 
     @Override
     public <T> T get(String key, int expireSeconds, Class<T> clazz, Supplier<T> supplier) {
-        T obj = getCastedString(key, clazz);
+        String value = getRaw(key);
+        if (isTombstone(value)) {
+            cacheMetrics.recordNegativeHit(key);
+            return null;
+        }
+        T obj = cast(value, clazz);
         if (obj != null) {
+            cacheMetrics.recordHit(key);
             return obj;
         }
 
-        obj = supplier.get();
+        cacheMetrics.recordMiss(key);
+        obj = cacheMetrics.recordLoad(key, supplier);
         if (obj == null) {
+            setTombstone(key, expireSeconds);
             return null;
         }
 
@@ -72,19 +128,40 @@ public class CacheServiceImpl implements CacheService {
         return obj;
     }
 
+    @Override
+    public <T, K> T get(
+            String key, int expireSeconds, Class<T> clazz, BloomFilter<K> existenceFilter, K id, Supplier<T> supplier) {
+        return get(key, expireSeconds, clazz, () -> existenceFilter.mightContain(id) ? supplier.get() : null);
+    }
+
     @Override
     public Long increment(String key) {
-        return getValueOps().increment(key);
+        return invalidating(key, () -> cacheMetrics.recordCommand("increment", key, () -> getValueOps().increment(key)));
     }
 
     @Override
     public void set(String key, String value) {
-        getValueOps().set(key, value);
+        cacheMetrics.recordPayloadSize("set", key, value);
+        invalidating(key, () -> cacheMetrics.recordCommand("set", key, () -> {
+            getValueOps().set(key, value);
+            return null;
+        }));
     }
 
     @Override
     public void set(String key, String value, Duration duration) {
-        getValueOps().set(key, value, duration);
+        setExact(key, value, expiryPolicyResolver.applyTtl(key, duration));
+    }
+
+    /**
+     * Sets {@code key} with exactly {@code duration}, bypassing its {@link ExpiryPolicy}
+     */
+    protected void setExact(String key, String value, Duration duration) {
+        cacheMetrics.recordPayloadSize("set", key, value);
+        invalidating(key, () -> cacheMetrics.recordCommand("set", key, () -> {
+            getValueOps().set(key, value, duration);
+            return null;
+        }));
     }
 
     /**
@@ -92,20 +169,22 @@ public class CacheServiceImpl implements CacheService {
      */
     @Override
     public Boolean setIfAbsent(String key, String value, Duration duration) {
-        return getValueOps().setIfAbsent(key, value, duration);
+        return invalidating(key, () -> cacheMetrics.recordCommand("setIfAbsent", key, () -> getValueOps().setIfAbsent(key, value, duration)));
     }
 
     @Override
     public void delete(String key) {
-        stringRedisTemplate.delete(key);
+        invalidating(key, () -> cacheMetrics.recordCommand("delete", key, () -> stringRedisTemplate.delete(key)));
     }
     @Override
     public void delete(List<String> keys) {
+        keys.forEach(hotKeyDetector::invalidate);
         stringRedisTemplate.delete(keys);
+        keys.forEach(hotKeyDetector::invalidate);
     }
     @Override
     public Boolean expire(String key, Duration duration) {
-        return stringRedisTemplate.expire(key, duration);
+        return invalidating(key, () -> stringRedisTemplate.expire(key, duration));
     }
     @Override
     public Long getExpire(String key) {
@@ -123,12 +202,20 @@ public class CacheServiceImpl implements CacheService {
     }
     @Override
     public List<String> multiGet(Collection<String> keys) {
-        return getValueOps().multiGet(keys);
+        List<String> values = cacheMetrics.recordCommand("multiGet", keys, () -> getValueOps().multiGet(keys));
+        if (values == null) {
+            return null;
+        }
+        List<String> mapped = new ArrayList<>(values);
+        mapped.replaceAll(value -> isTombstone(value) ? null : value);
+        return mapped;
     }
 
     @Override
     public String hashGet(String key, String hashKey) {
-        return getHashOps().get(key, hashKey);
+        return cacheMetrics.recordCommand("hashGet", key, () -> cacheCommandBatcher.isEnabled()
+                ? joinBatched(cacheCommandBatcher.hashGet(key, hashKey))
+                : getHashOps().get(key, hashKey));
     }
 
     @Override
@@ -138,7 +225,11 @@ public class CacheServiceImpl implements CacheService {
 
     @Override
     public void hashPut(String key, String hashKey, String value) {
-        getHashOps().put(key, hashKey, value);
+        cacheMetrics.recordPayloadSize("hashPut", key, value);
+        cacheMetrics.recordCommand("hashPut", key, () -> {
+            getHashOps().put(key, hashKey, value);
+            return null;
+        });
     }
 
     @Override
@@ -171,9 +262,26 @@ public class CacheServiceImpl implements CacheService {
         return getObjectHashOps().keys(key);
     }
 
+    @Override
+    public Stream<Map.Entry<String, String>> scanEntries(String key, long count) {
+        return getHashOps().scan(key, scanOptions(count)).stream();
+    }
+
+    @Override
+    public Stream<String> scanHashKeys(String key, long count) {
+        return scanEntries(key, count).map(Map.Entry::getKey);
+    }
+
+    @Override
+    public Stream<String> scanValues(String key, long count) {
+        return scanEntries(key, count).map(Map.Entry::getValue);
+    }
+
     @Override
     public Double zScore(String key, String member) {
-        return getZSetOps().score(key, member);
+        return cacheMetrics.recordCommand("zScore", key, () -> cacheCommandBatcher.isEnabled()
+                ? joinBatched(cacheCommandBatcher.zScore(key, member))
+                : getZSetOps().score(key, member));
     }
 
     /**
@@ -185,6 +293,11 @@ public class CacheServiceImpl implements CacheService {
         return getZSetOps().range(key, start, end);
     }
 
+    @Override
+    public Stream<TypedTuple<String>> scanZSet(String key, long count) {
+        return getZSetOps().scan(key, scanOptions(count)).stream();
+    }
+
     @Override
     public Set<String> zRangeByScore(String key, Long start, Long end) {
         return getRangeByScoreFromZSet(key, start.doubleValue(), end.doubleValue());
@@ -294,6 +407,11 @@ public class CacheServiceImpl implements CacheService {
         return getSetOps().members(key);
     }
 
+    @Override
+    public Stream<String> scanSet(String key, long count) {
+        return getSetOps().scan(key, scanOptions(count)).stream();
+    }
+
     @Override
     public Long removeSet(String key, Object... values){
         return getSetOps().remove(key, values);
@@ -316,12 +434,16 @@ public class CacheServiceImpl implements CacheService {
 
     @Override
     public String boundValueOpsGet(String key) {
-        return getBoundValueOps(key).get();
+        String value = getBoundValueOps(key).get();
+        return isTombstone(value) ? null : value;
     }
 
     @Override
     public void boundValueOpsSet(String key, String value, Duration duration) {
-        getBoundValueOps(key).set(value, duration);
+        invalidating(key, () -> {
+            getBoundValueOps(key).set(value, duration);
+            return null;
+        });
     }
 
     @Override
@@ -331,12 +453,16 @@ public class CacheServiceImpl implements CacheService {
 
     @Override
     public void renameKey(String oldKey, String newKey) {
-        stringRedisTemplate.rename(oldKey, newKey);
+        hotKeyDetector.invalidate(oldKey);
+        invalidating(newKey, () -> {
+            stringRedisTemplate.rename(oldKey, newKey);
+            return null;
+        });
+        hotKeyDetector.invalidate(oldKey);
     }
 
-    private <T> List<T> list0(String key, Class<T> clazz) {
+    private <T> List<T> list0(String value, Class<T> clazz) {
         try {
-            String value = get(key);
             if (StringUtils.isNotBlank(value)) {
                 return JSON.parseArray(value, clazz);
             }
@@ -350,19 +476,77 @@ public class CacheServiceImpl implements CacheService {
     public <T> List<T> list(
             String key, int expireSeconds, Class<T> clazz, Supplier<List<T>> supplier) {
 
-        List<T> objects = list0(key, clazz);
+        String value = getRaw(key);
+        if (isTombstone(value)) {
+            cacheMetrics.recordNegativeHit(key);
+            return new ArrayList<>();
+        }
+        List<T> objects = list0(value, clazz);
         if (objects != null && !objects.isEmpty()) {
+            cacheMetrics.recordHit(key);
             return objects;
         }
 
-        objects = supplier.get();
-        if (objects == null) {
-            return new ArrayList<>();
+        cacheMetrics.recordMiss(key);
+        objects = cacheMetrics.recordLoad(key, supplier);
+        if (objects == null || objects.isEmpty()) {
+            setTombstone(key, expireSeconds);
+            return objects == null ? new ArrayList<>() : objects;
         }
 
         set(key, JSON.toJSONString(objects), Duration.ofSeconds(expireSeconds));
         return objects;
     }
+
+    /**
+     * Drops the local copy of a hot {@code key} both before and after {@code write}, so that a read racing with the
+     * write cannot keep serving the previous value locally
+     */
+    private <T> T invalidating(String key, Supplier<T> write) {
+        hotKeyDetector.invalidate(key);
+        try {
+            return write.get();
+        } finally {
+            hotKeyDetector.invalidate(key);
+        }
+    }
+
+    static boolean isTombstone(String value) {
+        return TOMBSTONE.equals(value);
+    }
+
+    /**
+     * Caches a supplier miss so that lookups of non-existent entities do not reach the supplier every time.
+     * <br>Kept short so that newly created entities become visible quickly, see {@link ExpiryPolicy#getTombstoneTtlSeconds()}
+     */
+    private void setTombstone(String key, int expireSeconds) {
+        setExact(key, TOMBSTONE, expiryPolicyResolver.applyTombstoneTtl(key, Duration.ofSeconds(expireSeconds)));
+    }
+
+    /**
+     * Rethrows the original (usually {@link org.springframework.dao.DataAccessException}) so callers see the same
+     * exceptions with or without batching
+     */
+    private <T> T joinBatched(CompletableFuture<T> future) {
+        try {
+            return future.get(BATCHED_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Batched command timed out after " + BATCHED_TIMEOUT, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private ScanOptions scanOptions(long count) {
+        return ScanOptions.scanOptions().count(count).build();
+    }
+
     private ZSetOperations<String, String> getZSetOps() {
         return stringRedisTemplate.opsForZSet();
     }
@@ -0,0 +1,25 @@
+package com.ncslzh.projects.cache;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes the most recent slow Redis commands recorded by {@link CacheMetrics} as the {@code cacheslowkeys} actuator
+ * endpoint
+ */
+@Component
+@Endpoint(id = "cacheslowkeys")
+public class CacheSlowKeysEndpoint {
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    @ReadOperation
+    public List<CacheMetrics.SlowKey> recentSlowKeys() {
+        return cacheMetrics.getRecentSlowKeys();
+    }
+}
@@ -0,0 +1,86 @@
+package com.ncslzh.projects.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Declarative expiry of keys sharing a key prefix, so that keys populated in bulk do not all expire (or refresh) in
+ * the same second.
+ *
+ * <p>Configured per key prefix through {@link com.ncslzh.projects.placeholders.ConfigService}, see
+ * {@link ExpiryPolicyResolver}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpiryPolicy {
+    /**
+     * Overrides the TTL requested by the caller if set
+     */
+    private Long baseTtlSeconds;
+    /**
+     * TTLs are spread uniformly within +/- this percentage, e.g. {@code 10} spreads a 10 minute TTL over 9-11 minutes
+     */
+    private double jitterPercent;
+    /**
+     * If set, refreshable keys are refreshed after this ratio of their TTL, e.g. {@code 0.8} refreshes a key with a
+     * 10 minute TTL after 8 minutes.
+     * <br>The TTL is {@code baseTtlSeconds} if set, otherwise the TTL requested when the key is set. Keys without a TTL
+     * keep the requested {@code refreshAfter}
+     */
+    private Double refreshAheadRatio;
+    /**
+     * TTL of cached supplier misses, capped at the TTL requested for the key. Defaults to
+     * {@link ExpiryPolicyResolver#DEFAULT_TOMBSTONE_TTL}
+     */
+    private Long tombstoneTtlSeconds;
+
+    Duration applyTtl(Duration requestedTtl) {
+        Duration ttl = Objects.nonNull(baseTtlSeconds) ? Duration.ofSeconds(baseTtlSeconds) : requestedTtl;
+        return jitter(ttl);
+    }
+
+    /**
+     * @param ttl effective TTL of the key if known, otherwise {@code null}
+     */
+    Duration applyRefreshAfter(Duration requestedRefreshAfter, Duration ttl) {
+        Duration base = Objects.nonNull(baseTtlSeconds) ? Duration.ofSeconds(baseTtlSeconds) : ttl;
+        if (Objects.nonNull(refreshAheadRatio) && Objects.nonNull(base)) {
+            return jitter(Duration.ofMillis((long) (base.toMillis() * refreshAheadRatio)));
+        }
+        return jitter(requestedRefreshAfter);
+    }
+
+    Duration applyTombstoneTtl(Duration requestedTtl, Duration defaultTombstoneTtl) {
+        Duration tombstoneTtl = Objects.nonNull(tombstoneTtlSeconds) ? Duration.ofSeconds(tombstoneTtlSeconds) : defaultTombstoneTtl;
+        return jitter(requestedTtl.compareTo(tombstoneTtl) < 0 ? requestedTtl : tombstoneTtl);
+    }
+
+    Duration jitter(Duration duration) {
+        if (Objects.isNull(duration) || jitterPercent <= 0) {
+            return duration;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitterPercent, jitterPercent) / 100;
+        return Duration.ofMillis(Math.max(1, (long) (duration.toMillis() * factor)));
+    }
+
+    /**
+     * Config value of {@link ExpiryPolicyResolver#CONFIG_NAME}
+     */
+    @Data
+    @NoArgsConstructor
+    public static class ExpiryPolicies {
+        /**
+         * Key prefix to policy, the longest matching prefix applies
+         */
+        private Map<String, ExpiryPolicy> policies = Map.of();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ncslzh.projects.cache;
+
+import com.ncslzh.projects.placeholders.ConfigService;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Resolves the {@link ExpiryPolicy} of a key by the longest matching key prefix configured under
+ * {@link #CONFIG_NAME}, e.g.
+ * <pre>
+ * {"policies": {"ad:": {"baseTtlSeconds": 600, "jitterPercent": 10, "refreshAheadRatio": 0.8}}}
+ * </pre>
+ * Keys without a matching policy keep the TTL requested by the caller.
+ */
+@Component
+public class ExpiryPolicyResolver {
+
+    static final String CONFIG_NAME = "cacheExpiryPolicies";
+    static final Duration DEFAULT_TOMBSTONE_TTL = Duration.ofSeconds(60);
+    private static final ExpiryPolicy.ExpiryPolicies defaultPolicies = new ExpiryPolicy.ExpiryPolicies();
+
+    @Resource
+    private ConfigService configService;
+
+    /**
+     * Compiled from the last config snapshot seen, recompiled only when {@link ConfigService} returns a new instance
+     */
+    private volatile CompiledPolicies compiled = new CompiledPolicies(null, Map.of());
+
+    public ExpiryPolicy resolve(String key) {
+        ExpiryPolicy.ExpiryPolicies policies = configService.of(CONFIG_NAME, defaultPolicies, ExpiryPolicy.ExpiryPolicies.class);
+        CompiledPolicies current = compiled;
+        if (current.source != policies) {
+            current = new CompiledPolicies(policies,
+                    Objects.isNull(policies) || Objects.isNull(policies.getPolicies()) ? Map.of() : policies.getPolicies());
+            compiled = current;
+        }
+        return current.resolve(key);
+    }
+
+    public Duration applyTtl(String key, Duration requestedTtl) {
+        ExpiryPolicy policy = resolve(key);
+        return Objects.isNull(policy) ? requestedTtl : policy.applyTtl(requestedTtl);
+    }
+
+    /**
+     * TTL of a cached supplier miss, ignoring the policy's base TTL
+     *
+     * @param requestedTtl TTL requested for the key, tombstones never outlive it
+     */
+    public Duration applyTombstoneTtl(String key, Duration requestedTtl) {
+        ExpiryPolicy policy = resolve(key);
+        if (Objects.isNull(policy)) {
+            return requestedTtl.compareTo(DEFAULT_TOMBSTONE_TTL) < 0 ? requestedTtl : DEFAULT_TOMBSTONE_TTL;
+        }
+        return policy.applyTombstoneTtl(requestedTtl, DEFAULT_TOMBSTONE_TTL);
+    }
+
+    /**
+     * @param ttl effective TTL of the key if known, otherwise {@code null}
+     */
+    public Duration applyRefreshAfter(String key, Duration requestedRefreshAfter, Duration ttl) {
+        ExpiryPolicy policy = resolve(key);
+        return Objects.isNull(policy) ? requestedRefreshAfter : policy.applyRefreshAfter(requestedRefreshAfter, ttl);
+    }
+
+    /**
+     * Policies by prefix, looked up from the longest prefix length down, so that resolving a key takes one hash lookup
+     * per distinct prefix length rather than a scan of all prefixes
+     */
+    private static class CompiledPolicies {
+        private final ExpiryPolicy.ExpiryPolicies source;
+        private final Map<String, ExpiryPolicy> byPrefix;
+        /** Distinct prefix lengths, longest first */
+        private final int[] prefixLengths;
+
+        private CompiledPolicies(ExpiryPolicy.ExpiryPolicies source, Map<String, ExpiryPolicy> byPrefix) {
+            this.source = source;
+            this.byPrefix = new HashMap<>();
+            byPrefix.forEach((prefix, policy) -> {
+                if (Objects.nonNull(prefix) && Objects.nonNull(policy)) {
+                    this.byPrefix.put(prefix, policy);
+                }
+            });
+            this.prefixLengths = this.byPrefix.keySet().stream()
+                    .map(String::length)
+                    .distinct()
+                    .sorted(Comparator.reverseOrder())
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        private ExpiryPolicy resolve(String key) {
+            for (int prefixLength : prefixLengths) {
+                if (prefixLength <= key.length()) {
+                    ExpiryPolicy policy = byPrefix.get(key.substring(0, prefixLength));
+                    if (Objects.nonNull(policy)) {
+                        return policy;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.ncslzh.projects.cache;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link CacheService}
+ * <br>See {@link org.springframework.data.redis.core.ReactiveStringRedisTemplate}
+ *
+ * <p>Commands issued concurrently are pipelined by Lettuce over a shared connection, so fanning out many reads
+ * (e.g. {@code Flux.merge}) costs roughly one RTT instead of one RTT per read.
+ * <p>Use {@link Mono#toFuture()} where a {@link java.util.concurrent.CompletableFuture} is preferred.
+ */
+public interface ReactiveCacheService {
+
+    Mono<String> get(String key);
+
+    <T> Mono<T> getCastedString(String key, Class<T> targetCastClass);
+
+    /**
+     * {@code supplier} is treated as blocking (e.g. a DB call) and is run on a bounded elastic scheduler
+     */
+    <T> Mono<T> get(String key, int expireSeconds, Class<T> clazz, Supplier<T> supplier);
+
+    Mono<Long> increment(String key);
+
+    Mono<Boolean> set(String key, String value);
+
+    Mono<Boolean> set(String key, String value, Duration duration);
+
+    Mono<Boolean> setIfAbsent(String key, String value, Duration duration);
+
+    Mono<Long> delete(String key);
+
+    Mono<Boolean> expire(String key, Duration duration);
+
+    Mono<Boolean> hasKey(String key);
+
+    Mono<List<String>> multiGet(Collection<String> keys);
+
+    Mono<String> hashGet(String key, String hashKey);
+
+    Mono<Boolean> hashPut(String key, String hashKey, String value);
+
+    Mono<List<String>> hashMultiGet(String key, Collection<String> hashKeys);
+
+    Mono<Boolean> hashPutAll(String key, Map<String, String> hashKeys);
+
+    Mono<Double> zScore(String key, String member);
+
+    Mono<Boolean> addToZSet(String key, String value, Double score);
+
+    /**
+     * @param start - start index (inclusive)
+     * @param end - end index (inclusive)
+     */
+    Flux<String> zSetRange(String key, Long start, Long end);
+
+    Flux<String> getRangeByScoreFromZSet(String key, Double start, Double end);
+
+    <T> Mono<List<T>> list(String key, int expireSeconds, Class<T> clazz, Supplier<List<T>> supplier);
+}
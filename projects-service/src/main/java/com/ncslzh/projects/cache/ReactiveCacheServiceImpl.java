@@ -0,0 +1,222 @@
+package com.ncslzh.projects.cache;
+
+import com.alibaba.fastjson2.JSON;
+import com.ncslzh.projects.placeholders.DistributedLock;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Slf4j
+@Component
+public class ReactiveCacheServiceImpl implements ReactiveCacheService {
+
+    @Autowired
+    protected ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    @Resource
+    protected DistributedLock distributedLock;
+    @Resource
+    protected ExpiryPolicyResolver expiryPolicyResolver;
+
+    @Override
+    public Mono<String> get(String key) {
+        return getRaw(key).filter(value -> !CacheServiceImpl.isTombstone(value));
+    }
+
+    /**
+     * Same as {@link #get(String)}, but emits {@link CacheServiceImpl#TOMBSTONE} as is
+     */
+    private Mono<String> getRaw(String key) {
+        return getValueOps().get(key);
+    }
+
+    @Override
+    public <T> Mono<T> getCastedString(String key, Class<T> clazz) {
+        return get(key).flatMap(value -> cast(value, clazz));
+    }
+
+    private <T> Mono<T> cast(String value, Class<T> clazz) {
+        return Mono.just(value)
+                .filter(StringUtils::isNotBlank)
+                .map(notBlank -> JSON.parseObject(notBlank, clazz))
+                .onErrorResume(e -> {
+                    log.warn("get0 error", e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Supplier misses are cached as a {@link CacheServiceImpl#TOMBSTONE}, in the same format as {@link CacheServiceImpl}
+     */
+    @Override
+    public <T> Mono<T> get(String key, int expireSeconds, Class<T> clazz, Supplier<T> supplier) {
+        return getRaw(key)
+                .defaultIfEmpty(StringUtils.EMPTY)
+                .flatMap(value -> CacheServiceImpl.isTombstone(value)
+                        ? Mono.<T>empty()
+                        : cast(value, clazz).switchIfEmpty(Mono.defer(() -> load(supplier)
+                                .flatMap(obj -> set(key, JSON.toJSONString(obj), Duration.ofSeconds(expireSeconds))
+                                        .thenReturn(obj))
+                                .switchIfEmpty(Mono.defer(() -> setTombstone(key, expireSeconds).then(Mono.<T>empty()))))));
+    }
+
+    @Override
+    public Mono<Long> increment(String key) {
+        return getValueOps().increment(key);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, String value) {
+        return getValueOps().set(key, value);
+    }
+
+    @Override
+    public Mono<Boolean> set(String key, String value, Duration duration) {
+        return setExact(key, value, expiryPolicyResolver.applyTtl(key, duration));
+    }
+
+    /**
+     * Sets {@code key} with exactly {@code duration}, bypassing its {@link ExpiryPolicy}
+     */
+    protected Mono<Boolean> setExact(String key, String value, Duration duration) {
+        return getValueOps().set(key, value, duration);
+    }
+
+    @Override
+    public Mono<Boolean> setIfAbsent(String key, String value, Duration duration) {
+        return getValueOps().setIfAbsent(key, value, duration);
+    }
+
+    @Override
+    public Mono<Long> delete(String key) {
+        return reactiveStringRedisTemplate.delete(key);
+    }
+
+    @Override
+    public Mono<Boolean> expire(String key, Duration duration) {
+        return reactiveStringRedisTemplate.expire(key, duration);
+    }
+
+    @Override
+    public Mono<Boolean> hasKey(String key) {
+        return reactiveStringRedisTemplate.hasKey(key);
+    }
+
+    @Override
+    public Mono<List<String>> multiGet(Collection<String> keys) {
+        return getValueOps().multiGet(keys)
+                .map(values -> {
+                    List<String> mapped = new ArrayList<>(values);
+                    mapped.replaceAll(value -> CacheServiceImpl.isTombstone(value) ? null : value);
+                    return mapped;
+                });
+    }
+
+    @Override
+    public Mono<String> hashGet(String key, String hashKey) {
+        return getHashOps().get(key, hashKey);
+    }
+
+    @Override
+    public Mono<Boolean> hashPut(String key, String hashKey, String value) {
+        return getHashOps().put(key, hashKey, value);
+    }
+
+    @Override
+    public Mono<List<String>> hashMultiGet(String key, Collection<String> hashKeys) {
+        return getHashOps().multiGet(key, hashKeys);
+    }
+
+    @Override
+    public Mono<Boolean> hashPutAll(String key, Map<String, String> hashKeys) {
+        return getHashOps().putAll(key, hashKeys);
+    }
+
+    @Override
+    public Mono<Double> zScore(String key, String member) {
+        return getZSetOps().score(key, member);
+    }
+
+    @Override
+    public Mono<Boolean> addToZSet(String key, String value, Double score) {
+        return getZSetOps().add(key, value, score);
+    }
+
+    @Override
+    public Flux<String> zSetRange(String key, Long start, Long end) {
+        return getZSetOps().range(key, Range.closed(start, end));
+    }
+
+    @Override
+    public Flux<String> getRangeByScoreFromZSet(String key, Double start, Double end) {
+        return getZSetOps().rangeByScore(key, Range.closed(start, end));
+    }
+
+    private <T> Mono<List<T>> list0(String value, Class<T> clazz) {
+        return Mono.just(value)
+                .filter(StringUtils::isNotBlank)
+                .map(notBlank -> JSON.parseArray(notBlank, clazz))
+                .onErrorResume(e -> {
+                    log.warn("get0 error", e);
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public <T> Mono<List<T>> list(String key, int expireSeconds, Class<T> clazz, Supplier<List<T>> supplier) {
+        return getRaw(key)
+                .defaultIfEmpty(StringUtils.EMPTY)
+                .flatMap(value -> CacheServiceImpl.isTombstone(value)
+                        ? Mono.<List<T>>just(new ArrayList<>())
+                        : list0(value, clazz)
+                                .filter(objects -> !objects.isEmpty())
+                                .switchIfEmpty(Mono.defer(() -> load(supplier)
+                                        .filter(objects -> !objects.isEmpty())
+                                        .flatMap(objects -> set(key, JSON.toJSONString(objects), Duration.ofSeconds(expireSeconds))
+                                                .thenReturn(objects))
+                                        .switchIfEmpty(Mono.defer(() -> setTombstone(key, expireSeconds)
+                                                .thenReturn(new ArrayList<>()))))));
+    }
+
+    /**
+     * See {@link CacheServiceImpl}, tombstones bypass the key's base TTL
+     */
+    private Mono<Boolean> setTombstone(String key, int expireSeconds) {
+        return setExact(key, CacheServiceImpl.TOMBSTONE, expiryPolicyResolver.applyTombstoneTtl(key, Duration.ofSeconds(expireSeconds)));
+    }
+
+    /**
+     * Suppliers are usually blocking calls (DB, RPC), so they must never run on the Lettuce event loop
+     */
+    protected <T> Mono<T> load(Supplier<T> supplier) {
+        return Mono.fromSupplier(supplier).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ReactiveValueOperations<String, String> getValueOps() {
+        return reactiveStringRedisTemplate.opsForValue();
+    }
+
+    private ReactiveHashOperations<String, String, String> getHashOps() {
+        return reactiveStringRedisTemplate.opsForHash();
+    }
+
+    private ReactiveZSetOperations<String, String> getZSetOps() {
+        return reactiveStringRedisTemplate.opsForZSet();
+    }
+}
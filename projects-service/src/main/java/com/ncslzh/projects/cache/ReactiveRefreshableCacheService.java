@@ -0,0 +1,35 @@
+package com.ncslzh.projects.cache;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link RefreshableCacheService}. Keys are stored in the same format, so both services
+ * can read and refresh keys written by the other.
+ */
+public interface ReactiveRefreshableCacheService extends ReactiveCacheService {
+    /**
+     * If key does not exist in cache, stores a new {@code RefreshableKey } and emits the value from {@code supplier}
+     * Otherwise, emits the key whilst refreshing value asynchronously from {@code supplier}
+     * i.e. Old value is returned
+     */
+    <T> Mono<String> getRefreshableFallback(String key, Duration refreshAfter, Duration expireAfter, Supplier<T> supplier);
+
+    /**
+     * Same as above, but casts into desired {@code clazz}
+     */
+    <T> Mono<T> getRefreshableFallback(String key, Class<T> clazz, Duration refreshAfter, Duration expireAfter, Supplier<T> supplier);
+
+    /**
+     * Sets a {@code RefreshableKey} that attempts to refresh the first key access after {@code refreshAfter} and does not expire
+     */
+    Mono<Boolean> setRefreshable(String key, String value, Duration refreshAfter);
+
+    /**
+     * Sets a {@code RefreshableKey} that attempts to refresh the first key access after {@code refreshAfter} and expires
+     * after {@code expireAfter}
+     */
+    Mono<Boolean> setRefreshable(String key, String value, Duration refreshAfter, Duration expireAfter);
+}
@@ -0,0 +1,131 @@
+package com.ncslzh.projects.cache;
+
+import com.alibaba.fastjson2.JSON;
+import com.ncslzh.projects.cache.RefreshableCacheServiceImpl.RefreshableKey;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class ReactiveRefreshableCacheServiceImpl extends ReactiveCacheServiceImpl implements ReactiveRefreshableCacheService {
+
+    private static final String REFRESH_LOCK_S = "refreshKey_%s";
+
+    /**
+     * Keys with a refresh pending in this instance, so that concurrent stale reads submit a single refresh
+     */
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public <T> Mono<String> getRefreshableFallback(String key, Duration refreshAfter, Duration expireAfter, Supplier<T> supplier) {
+        // A wrapped key without a value is treated as a miss, Reactor does not allow null elements
+        return getCastedString(key, RefreshableKey.class)
+                .mapNotNull(wrappedKey -> {
+                    if (wrappedKey.isUpForRefresh()) {
+                        refreshKeyAsync(key, refreshAfter, wrappedKey, supplier);
+                    }
+                    return wrappedKey.getValue();
+                })
+                .switchIfEmpty(Mono.defer(() -> load(supplier)
+                        .flatMap(newValue -> {
+                            String jsonString = JSON.toJSONString(newValue);
+                            return setRefreshable(key, jsonString, refreshAfter, expireAfter).thenReturn(jsonString);
+                        })
+                        .doOnSuccess(jsonString -> {
+                            if (jsonString == null) {
+                                log.info("[ReactiveCacheService][Supplier null] Supplier returned null for key={}", key);
+                            }
+                        })));
+    }
+
+    @Override
+    public <T> Mono<T> getRefreshableFallback(String key, Class<T> clazz, Duration refreshAfter, Duration expireAfter, Supplier<T> supplier) {
+        return getRefreshableFallback(key, refreshAfter, expireAfter, supplier)
+                .filter(StringUtils::isNotEmpty)
+                .map(value -> JSON.parseObject(value, clazz))
+                .onErrorResume(e -> {
+                    log.warn("cast error", e);
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<Boolean> setRefreshable(String key, String value, Duration refreshAfter, Duration expireAfter) {
+        Duration ttl = expiryPolicyResolver.applyTtl(key, expireAfter);
+        return setExact(key, JSON.toJSONString(newRefreshableKey(key, value, refreshAfter, ttl)), ttl);
+    }
+
+    @Override
+    public Mono<Boolean> setRefreshable(String key, String value, Duration refreshAfter) {
+        // No TTL is requested, but the key's ExpiryPolicy may still set one
+        Duration ttl = expiryPolicyResolver.applyTtl(key, null);
+        String wrappedKey = JSON.toJSONString(newRefreshableKey(key, value, refreshAfter, ttl));
+        return Objects.isNull(ttl) ? set(key, wrappedKey) : setExact(key, wrappedKey, ttl);
+    }
+
+    private RefreshableKey newRefreshableKey(String key, String value, Duration refreshAfter, Duration ttl) {
+        return RefreshableKey.builder()
+                .value(value)
+                .lastUpdatedTime(System.currentTimeMillis())
+                .refreshAfter(expiryPolicyResolver.applyRefreshAfter(key, refreshAfter, ttl))
+                .ttl(ttl)
+                .build();
+    }
+
+    /**
+     * Same semantics as {@link RefreshableCacheServiceImpl}: the remaining TTL of the key is kept, and a key that has
+     * expired in the meantime is not resurrected
+     */
+    private <T> Mono<Boolean> refreshKey(String key, Duration refreshAfter, RefreshableKey wrappedKey, Supplier<T> supplier) {
+        return reactiveStringRedisTemplate.getExpire(key)
+                .filter(expireAfter -> {
+                    if (expireAfter.isNegative() || expireAfter.isZero()) {
+                        log.info("[ReactiveCacheService][Refresh][Expired] key={} expireAfter={}", key, expireAfter);
+                        return false;
+                    }
+                    return true;
+                })
+                .flatMap(expireAfter -> load(supplier)
+                        .switchIfEmpty(Mono.fromRunnable(() ->
+                                log.info("[ReactiveCacheService][Refresh][Supplier null] Supplier returned null for key={}", key)))
+                        .flatMap(value -> {
+                            String newJsonString = JSON.toJSONString(value);
+                            if (!newJsonString.equals(wrappedKey.getValue())) {
+                                log.info("[ReactiveCacheService][Refresh][Difference] difference during refresh | before={}, after={}", wrappedKey.getValue(), newJsonString);
+                            }
+                            wrappedKey.setValue(newJsonString);
+                            wrappedKey.refreshUpdatedTime();
+                            wrappedKey.setRefreshAfter(expiryPolicyResolver.applyRefreshAfter(key, refreshAfter, wrappedKey.getTtl()));
+                            // Keep the remaining TTL as is, it was already adjusted by the key's ExpiryPolicy when first set
+                            return setExact(key, JSON.toJSONString(wrappedKey), expireAfter);
+                        }));
+    }
+
+    /**
+     * {@link com.ncslzh.projects.placeholders.DistributedLock} makes a Redis round-trip, so lock acquisition is moved off the
+     * caller's thread as well, and the refresh is awaited whilst holding the lock so that it is not released early.
+     * The stale value is emitted without waiting for either.
+     */
+    private <T> void refreshKeyAsync(String key, Duration refreshAfter, RefreshableKey wrappedKey, Supplier<T> supplier) {
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        String lockKey = String.format(REFRESH_LOCK_S, key);
+        Mono.fromRunnable(() -> distributedLock.tryRunWithLock(lockKey, 1, () -> {
+                    log.info("[ReactiveCacheService][Refresh Async] Refreshing key={}", key);
+                    refreshKey(key, refreshAfter, wrappedKey, supplier).block();
+                }))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> refreshingKeys.remove(key))
+                .subscribe(null, e -> log.error("[ReactiveCacheService][Refresh Async] Exception refreshing key={}, wrappedKey={}, e={}", key, wrappedKey, e.getMessage()));
+    }
+}
@@ -1,6 +1,7 @@
 package com.ncslzh.projects.cache;
 
 import com.alibaba.fastjson2.JSON;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -13,8 +14,12 @@ import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 @Component
@@ -24,11 +29,27 @@ public class RefreshableCacheServiceImpl extends CacheServiceImpl implements Ref
 
     private static final String REFRESH_LOCK_S = "refreshKey_%s";
 
+    /**
+     * Refreshes submitted to {@code asyncExecutor} but not yet completed
+     */
+    private final AtomicInteger pendingRefreshes = new AtomicInteger();
+
+    /**
+     * Keys with a refresh pending in this instance, so that concurrent stale reads submit a single refresh
+     */
+    private final Set<String> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        cacheMetrics.registerRefreshQueue(pendingRefreshes, AtomicInteger::get);
+    }
+
     @Override
     public <T> String getRefreshableFallback(String key, Duration refreshAfter, Duration expireAfter, Supplier<T> supplier) {
         RefreshableKey wrappedKey = getCastedString(key, RefreshableKey.class);
         if (Objects.isNull(wrappedKey)) {
-            T newValue = supplier.get();
+            cacheMetrics.recordMiss(key);
+            T newValue = cacheMetrics.recordLoad(key, supplier);
             if (Objects.isNull(newValue)) {
                 log.info("[CacheService][Supplier null] Supplier returned null for key={}", key);
                 return null;
@@ -38,9 +59,11 @@ public class RefreshableCacheServiceImpl extends CacheServiceImpl implements Ref
             return jsonString;
         }
 
-        if (wrappedKey.isUpForRefresh()) {
-            String lockKey = String.format(REFRESH_LOCK_S, key);
-            distributedLock.runWithLock(lockKey, 1, () -> refreshKeyAsync(key, refreshAfter, wrappedKey, supplier));
+        if (!wrappedKey.isUpForRefresh()) {
+            cacheMetrics.recordHit(key);
+        } else {
+            cacheMetrics.recordStale(key);
+            refreshKeyAsync(key, refreshAfter, wrappedKey, supplier);
         }
 
         return wrappedKey.getValue();
@@ -61,24 +84,33 @@ public class RefreshableCacheServiceImpl extends CacheServiceImpl implements Ref
 
     @Override
     public void setRefreshable(String key, String value, Duration refreshAfter, Duration expireAfter) {
+        Duration ttl = expiryPolicyResolver.applyTtl(key, expireAfter);
         RefreshableKey wrappedKey = RefreshableKey.builder()
                 .value(value)
                 .lastUpdatedTime(System.currentTimeMillis())
-                .refreshAfter(refreshAfter)
+                .refreshAfter(expiryPolicyResolver.applyRefreshAfter(key, refreshAfter, ttl))
+                .ttl(ttl)
                 .build();
 
-        set(key, JSON.toJSONString(wrappedKey), expireAfter);
+        setExact(key, JSON.toJSONString(wrappedKey), ttl);
     }
 
     @Override
     public void setRefreshable(String key, String value, Duration refreshAfter) {
+        // No TTL is requested, but the key's ExpiryPolicy may still set one
+        Duration ttl = expiryPolicyResolver.applyTtl(key, null);
         RefreshableKey wrappedKey = RefreshableKey.builder()
                 .value(value)
                 .lastUpdatedTime(System.currentTimeMillis())
-                .refreshAfter(refreshAfter)
+                .refreshAfter(expiryPolicyResolver.applyRefreshAfter(key, refreshAfter, ttl))
+                .ttl(ttl)
                 .build();
 
-        set(key, JSON.toJSONString(wrappedKey));
+        if (Objects.isNull(ttl)) {
+            set(key, JSON.toJSONString(wrappedKey));
+        } else {
+            setExact(key, JSON.toJSONString(wrappedKey), ttl);
+        }
     }
 
     /**
@@ -91,7 +123,7 @@ public class RefreshableCacheServiceImpl extends CacheServiceImpl implements Ref
             return;
         }
 
-        T value = supplier.get();
+        T value = cacheMetrics.recordLoad(key, supplier);
 
         if (Objects.isNull(value)) {
             log.info("[CacheService][Refresh][Supplier null] Supplier returned null for key={}", key);
@@ -105,27 +137,50 @@ public class RefreshableCacheServiceImpl extends CacheServiceImpl implements Ref
         wrappedKey.setValue(newJsonString);
         wrappedKey.refreshUpdatedTime();
         // In case there is a new refreshAfter value, changes can take effect on next refresh, and not until the key expires
-        wrappedKey.setRefreshAfter(refreshAfter);
-        set(key, JSON.toJSONString(wrappedKey), Duration.ofSeconds(expireAfter));
+        wrappedKey.setRefreshAfter(expiryPolicyResolver.applyRefreshAfter(key, refreshAfter, wrappedKey.getTtl()));
+        // Keep the remaining TTL as is, it was already adjusted by the key's ExpiryPolicy when first set
+        setExact(key, JSON.toJSONString(wrappedKey), Duration.ofSeconds(expireAfter));
     }
 
+    /**
+     * The refresh runs whilst holding the lock on {@code asyncExecutor}, so that the lock spans the refresh itself and
+     * other instances skip it until it completes
+     */
     private <T> void refreshKeyAsync(String key, Duration refreshAfter, RefreshableKey wrappedKey, Supplier<T> supplier) {
-        log.info("[CacheService][Refresh Async] Refreshing key={}", key);
-        CompletableFuture.runAsync(() -> refreshKey(key, refreshAfter, wrappedKey, supplier), asyncExecutor)
-                .exceptionally(e -> {
-                    log.error("[CacheService][Refresh Async] Exception refreshing key={}, wrappedKey={}, e={}", key, wrappedKey, e.getMessage());
-                    return null;
-                });
+        if (!refreshingKeys.add(key)) {
+            return;
+        }
+        String lockKey = String.format(REFRESH_LOCK_S, key);
+        pendingRefreshes.incrementAndGet();
+        try {
+            CompletableFuture.runAsync(() -> distributedLock.tryRunWithLock(lockKey, 1, () -> {
+                        log.info("[CacheService][Refresh Async] Refreshing key={}", key);
+                        refreshKey(key, refreshAfter, wrappedKey, supplier);
+                    }), asyncExecutor)
+                    .whenComplete((ignored, e) -> {
+                        refreshingKeys.remove(key);
+                        pendingRefreshes.decrementAndGet();
+                    })
+                    .exceptionally(e -> {
+                        log.error("[CacheService][Refresh Async] Exception refreshing key={}, wrappedKey={}, e={}", key, wrappedKey, e.getMessage());
+                        return null;
+                    });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(key);
+            pendingRefreshes.decrementAndGet();
+            throw e;
+        }
     }
 
     /**
      * Wrapper class for storing value as well as {@code lastUpdatedTime} for refresh mechanism.
+     * <br>Shared with {@link ReactiveRefreshableCacheServiceImpl} so that both read and write the same format
      */
     @Data
     @Builder
     @NoArgsConstructor
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
-    private static class RefreshableKey {
+    static class RefreshableKey {
         /**
          * Can be a Json string
          */
@@ -135,13 +190,18 @@ public class RefreshableCacheServiceImpl extends CacheServiceImpl implements Ref
          * Time (after lastUpdatedTime) when a key refresh will be attempted
          */
         private Duration refreshAfter;
+        /**
+         * TTL the key was set with, {@code null} if none (or set before this was recorded). Refreshes keep the remaining
+         * TTL, so this is what {@link ExpiryPolicy#getRefreshAheadRatio()} applies to after a refresh
+         */
+        private Duration ttl;
 
-        private boolean isUpForRefresh() {
+        boolean isUpForRefresh() {
             Duration durationSinceLastUpdate = Duration.ofMillis(System.currentTimeMillis() - lastUpdatedTime);
             return durationSinceLastUpdate.compareTo(refreshAfter) >= 0;
         }
 
-        private void refreshUpdatedTime() {
+        void refreshUpdatedTime() {
             lastUpdatedTime = System.currentTimeMillis();
         }
     }
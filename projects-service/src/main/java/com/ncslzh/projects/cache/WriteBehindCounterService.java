@@ -0,0 +1,148 @@
+package com.ncslzh.projects.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind alternative to {@link CacheService#increment(String)} for high-frequency counters (e.g. metrics), where
+ * one INCR round-trip per event is too expensive and a short delay before the value is visible in Redis is fine.
+ *
+ * <p>Deltas are accumulated in-process in a {@link LongAdder} per key, and flushed as a single pipelined batch of
+ * INCRBY every {@link #FLUSH_INTERVAL}, or as soon as {@link #MAX_BUFFERED_KEYS} keys are buffered, and on shutdown.
+ * Deltas of a failed flush are put back and retried on the next flush.
+ *
+ * <p>Buffers are swapped on every flush instead of being locked. A buffer is flushed once when swapped out, and once
+ * more on the next flush to pick up increments from threads that read the buffer just before the swap. Only an
+ * increment stalled for more than two flush intervals could be lost.
+ */
+@Slf4j
+@Component
+public class WriteBehindCounterService {
+
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(500);
+    private static final int MAX_BUFFERED_KEYS = 10_000;
+
+    @Resource
+    private CacheService cacheServiceImpl;
+
+    private volatile Map<String, LongAdder> buffer = new ConcurrentHashMap<>();
+    /**
+     * Buffer swapped out by the previous flush, flushed again to catch late increments
+     */
+    private volatile Map<String, LongAdder> retiring = new ConcurrentHashMap<>();
+    /**
+     * Deltas being sent to Redis, so that {@link #approximateValue(String)} does not undercount during a flush
+     */
+    private volatile Map<String, Long> inFlight = Map.of();
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    public void init() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-write-behind-counter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL.toMillis(), FLUSH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(FLUSH_INTERVAL.toMillis() * 2, TimeUnit.MILLISECONDS);
+        // Twice, so that both the current and the retiring buffer are flushed
+        flush();
+        flush();
+    }
+
+    public void increment(String key) {
+        increment(key, 1);
+    }
+
+    public void increment(String key, long delta) {
+        Map<String, LongAdder> current = buffer;
+        current.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+
+        if (current.size() >= MAX_BUFFERED_KEYS && !flushExecutor.isShutdown() && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * @return value of {@code key} in Redis plus the deltas not yet flushed by this instance. Unflushed deltas of other
+     * instances are not included.
+     */
+    public long approximateValue(String key) {
+        return NumberUtils.toLong(cacheServiceImpl.get(key)) + localDelta(key);
+    }
+
+    private long localDelta(String key) {
+        long delta = inFlight.getOrDefault(key, 0L);
+        LongAdder retiringAdder = retiring.get(key);
+        if (retiringAdder != null) {
+            delta += retiringAdder.sum();
+        }
+        LongAdder bufferedAdder = buffer.get(key);
+        if (bufferedAdder != null) {
+            delta += bufferedAdder.sum();
+        }
+        return delta;
+    }
+
+    synchronized void flush() {
+        flushRequested.set(false);
+
+        Map<String, LongAdder> late = retiring;
+        retiring = buffer;
+        buffer = new ConcurrentHashMap<>();
+
+        Map<String, Long> deltas = new HashMap<>();
+        drain(late, deltas);
+        drain(retiring, deltas);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        inFlight = deltas;
+        try {
+            cacheServiceImpl.executePipelined((RedisCallback<Object>) connection -> {
+                deltas.forEach((key, delta) ->
+                        connection.stringCommands().incrBy(key.getBytes(StandardCharsets.UTF_8), delta));
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("[WriteBehindCounter][Flush] Exception flushing keys={}, e={}", deltas.size(), e.getMessage());
+            // Put back so that they are retried on the next flush
+            deltas.forEach(this::increment);
+        } finally {
+            inFlight = Map.of();
+        }
+    }
+
+    private void drain(Map<String, LongAdder> adders, Map<String, Long> deltas) {
+        adders.forEach((key, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.merge(key, delta, Long::sum);
+            }
+        });
+    }
+}
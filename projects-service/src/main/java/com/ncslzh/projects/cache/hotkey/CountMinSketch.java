@@ -0,0 +1,78 @@
+package com.ncslzh.projects.cache.hotkey;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Thread-safe Count-Min sketch for estimating the frequency of keys in constant memory.
+ *
+ * <p>Estimates never undercount, and overcount by at most {@code e/width * totalCount} with probability
+ * {@code 1 - e^-depth}.
+ * <p>Counts are aged with {@link #halve()} so that the sketch reflects recent traffic rather than all-time traffic.
+ */
+public class CountMinSketch {
+
+    /**
+     * Odd 64-bit constants used to derive {@code depth} independent row hashes from a single {@code hashCode}
+     */
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int depth;
+    private final int width;
+    private final AtomicIntegerArray counts;
+
+    /**
+     * @param depth number of rows (hash functions), at most 8
+     * @param width number of counters per row, rounded up to a power of 2
+     */
+    public CountMinSketch(int depth, int width) {
+        Preconditions.checkArgument(depth > 0 && depth <= SEEDS.length, "depth (%s) must be in [1, %s]", depth, SEEDS.length);
+        Preconditions.checkArgument(width > 0, "width (%s) must be > 0", width);
+
+        this.depth = depth;
+        int roundedWidth = Integer.highestOneBit(width);
+        this.width = roundedWidth < width ? roundedWidth << 1 : roundedWidth;
+        this.counts = new AtomicIntegerArray(this.depth * this.width);
+    }
+
+    /**
+     * Increments the counters of {@code key} and returns its new estimated count
+     */
+    public int add(Object key) {
+        int hash = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int count = counts.incrementAndGet(indexOf(row, hash));
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    public int estimate(Object key) {
+        int hash = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(indexOf(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter. Concurrent {@link #add(Object)}s may be lost, which is acceptable for an estimate.
+     */
+    public void halve() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, counts.get(i) >>> 1);
+        }
+    }
+
+    private int indexOf(int row, int hash) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        mixed ^= mixed >>> 32;
+        return row * width + ((int) mixed & (width - 1));
+    }
+}
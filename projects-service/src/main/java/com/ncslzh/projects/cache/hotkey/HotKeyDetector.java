@@ -0,0 +1,229 @@
+package com.ncslzh.projects.cache.hotkey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects keys that receive a disproportionate share of reads, and keeps a short-lived in-process copy of them so that
+ * a single Redis shard is not saturated.
+ *
+ * <p>Accesses are sampled into a {@link CountMinSketch}. Keys whose estimated reads within a {@link #WINDOW} cross
+ * {@link #HOT_THRESHOLD} are tracked in a top-K heap and promoted; their values are then served locally for up to
+ * {@link #LOCAL_COPY_TTL}. Counts are halved every window, so keys that cool down are demoted again.
+ *
+ * <p>Local copies are only invalidated on the writing node, other nodes may serve a stale value for up to
+ * {@link #LOCAL_COPY_TTL}. Keep it short.
+ *
+ * <p>Hot keys are exposed through {@link HotKeysEndpoint} and the {@code cache.hotkeys.*} metrics.
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    /**
+     * 1 in {@code SAMPLE_RATE} accesses are recorded, estimates are scaled back up accordingly
+     */
+    private static final int SAMPLE_RATE = 8;
+    private static final Duration WINDOW = Duration.ofSeconds(10);
+    /**
+     * Estimated reads per {@link #WINDOW} for a key to be considered hot
+     */
+    private static final int HOT_THRESHOLD = 5_000;
+    private static final int TOP_K = 32;
+    private static final Duration LOCAL_COPY_TTL = Duration.ofSeconds(1);
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final CountMinSketch sketch = new CountMinSketch(4, 4096);
+    private final Cache<String, String> localCopies = CacheBuilder.newBuilder()
+            .maximumSize(TOP_K)
+            .expireAfterWrite(LOCAL_COPY_TTL)
+            .build();
+    /**
+     * Min-heap of the hottest keys, guarded by {@code this}
+     */
+    private final PriorityQueue<HotKey> topK = new PriorityQueue<>(Comparator.comparingLong(HotKey::getEstimatedReads));
+    private final Map<String, HotKey> topKIndex = new HashMap<>();
+    /**
+     * Copy-on-write snapshot of {@link #topKIndex} keys for lock-free {@link #isHot(String)} checks
+     */
+    private volatile Set<String> hotKeys = Set.of();
+
+    private ScheduledExecutorService agingExecutor;
+    private Counter localHits;
+
+    @PostConstruct
+    public void init() {
+        localHits = Counter.builder("cache.hotkeys.local.hits")
+                .description("Reads served from the in-process copy of a hot key")
+                .register(meterRegistry);
+        Gauge.builder("cache.hotkeys.count", this, detector -> detector.hotKeys.size())
+                .description("Number of keys currently promoted to an in-process copy")
+                .register(meterRegistry);
+
+        agingExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-hotkey-aging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agingExecutor.scheduleAtFixedRate(this::age, WINDOW.toMillis(), WINDOW.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        agingExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the in-process copy of {@code key} if it is hot, otherwise {@code null}
+     */
+    public String getLocalCopy(String key) {
+        if (!isHot(key)) {
+            return null;
+        }
+        String value = localCopies.getIfPresent(key);
+        if (value != null) {
+            localHits.increment();
+            // Keep counting reads served locally, otherwise a hot key would be demoted after one window
+            sample(key);
+        }
+        return value;
+    }
+
+    /**
+     * Records a read of {@code key} that went to Redis, and keeps a local copy of {@code value} if the key is hot
+     */
+    public void recordAccess(String key, String value) {
+        long estimatedReads = sample(key);
+        if (!isHot(key) && estimatedReads >= HOT_THRESHOLD) {
+            promote(key, estimatedReads);
+        }
+        // Promotion may have been refused, and only keys in the top-K may take one of the TOP_K local copies
+        if (value != null && isHot(key)) {
+            localCopies.put(key, value);
+        }
+    }
+
+    /**
+     * Should be called on every write to {@code key}, both before and after the write
+     */
+    public void invalidate(String key) {
+        localCopies.invalidate(key);
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * @return hot keys, hottest first
+     */
+    public synchronized List<HotKey> getHotKeys() {
+        List<HotKey> snapshot = new ArrayList<>(topK.size());
+        for (HotKey hotKey : topK) {
+            snapshot.add(new HotKey(hotKey.getKey(), hotKey.getEstimatedReads()));
+        }
+        snapshot.sort(Comparator.comparingLong(HotKey::getEstimatedReads).reversed());
+        return snapshot;
+    }
+
+    /**
+     * @return the estimated reads of {@code key} in the current window if the access was sampled, otherwise {@code -1}
+     */
+    private long sample(String key) {
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+            return -1;
+        }
+        return (long) sketch.add(key) * SAMPLE_RATE;
+    }
+
+    private synchronized void promote(String key, long estimatedReads) {
+        HotKey existing = topKIndex.get(key);
+        if (existing != null) {
+            topK.remove(existing);
+            existing.estimatedReads = estimatedReads;
+            topK.add(existing);
+            return;
+        }
+
+        if (topK.size() >= TOP_K) {
+            if (topK.peek().getEstimatedReads() >= estimatedReads) {
+                return;
+            }
+            HotKey evicted = topK.poll();
+            topKIndex.remove(evicted.getKey());
+            localCopies.invalidate(evicted.getKey());
+        }
+
+        HotKey hotKey = new HotKey(key, estimatedReads);
+        topK.add(hotKey);
+        topKIndex.put(key, hotKey);
+        publishHotKeys();
+        log.info("[HotKeyDetector][Promote] key={}, estimatedReads={}", key, estimatedReads);
+    }
+
+    /**
+     * Demotes keys whose estimated reads fell below {@link #HOT_THRESHOLD}, then halves all counts
+     */
+    private synchronized void age() {
+        try {
+            List<HotKey> retained = new ArrayList<>(topK.size());
+            for (HotKey hotKey : topK) {
+                hotKey.estimatedReads = (long) sketch.estimate(hotKey.getKey()) * SAMPLE_RATE;
+                if (hotKey.estimatedReads >= HOT_THRESHOLD) {
+                    retained.add(hotKey);
+                } else {
+                    topKIndex.remove(hotKey.getKey());
+                    localCopies.invalidate(hotKey.getKey());
+                    log.info("[HotKeyDetector][Demote] key={}", hotKey.getKey());
+                }
+            }
+            topK.clear();
+            topK.addAll(retained);
+            publishHotKeys();
+            sketch.halve();
+        } catch (Exception e) {
+            log.error("[HotKeyDetector][Aging] Exception aging hot keys, e={}", e.getMessage());
+        }
+    }
+
+    private void publishHotKeys() {
+        hotKeys = Set.copyOf(topKIndex.keySet());
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class HotKey {
+        private final String key;
+        /**
+         * Estimated reads within the current window. Mutated only while holding the detector's lock.
+         */
+        private long estimatedReads;
+    }
+}
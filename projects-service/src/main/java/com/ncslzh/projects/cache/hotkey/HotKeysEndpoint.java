@@ -0,0 +1,24 @@
+package com.ncslzh.projects.cache.hotkey;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Exposes the keys currently promoted by {@link HotKeyDetector} as the {@code hotkeys} actuator endpoint
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeysEndpoint {
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @ReadOperation
+    public List<HotKeyDetector.HotKey> hotKeys() {
+        return hotKeyDetector.getHotKeys();
+    }
+}
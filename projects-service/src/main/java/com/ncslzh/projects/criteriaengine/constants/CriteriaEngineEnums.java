@@ -1,7 +1,8 @@
 package com.ncslzh.projects.criteriaengine.constants;
 
-import java.util.List;
+import java.util.EnumSet;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 
 import com.ncslzh.projects.criteriaengine.criterion.Criterion;
 import com.ncslzh.projects.criteriaengine.dto.CriteriaEvaluationOutput;
@@ -25,21 +26,37 @@ public class CriteriaEngineEnums {
      */
     @AllArgsConstructor
     public enum CriteriaExecutionResultStrategy {
-        FAIL_IF_ANY_FAIL(o -> o.hasFailure() ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
-        FAIL_IF_ALL_FAIL(o -> o.hasAllFailed() ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
-        FAIL_IF_ANY_SKIP(o -> o.hasSkipped() ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
-        FAIL_IF_ALL_SKIP(o -> o.hasAllSkipped() ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
-        FAIL_IF_ANY_FAIL_OR_SKIP(o -> (o.hasSkipped() || o.hasFailure()) ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
+        FAIL_IF_ANY_FAIL((passed, failed, skipped) -> failed > 0 ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
+        FAIL_IF_ALL_FAIL((passed, failed, skipped) -> failed == passed + failed + skipped ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
+        FAIL_IF_ANY_SKIP((passed, failed, skipped) -> skipped > 0 ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
+        FAIL_IF_ALL_SKIP((passed, failed, skipped) -> skipped == passed + failed + skipped ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
+        FAIL_IF_ANY_FAIL_OR_SKIP((passed, failed, skipped) -> (skipped > 0 || failed > 0) ? CriteriaExecutionResult.FAILED : CriteriaExecutionResult.PASSED),
 
-        ALWAYS_PASS(o -> CriteriaExecutionResult.PASSED),
-        PASS_ONLY_IF_ALL_PASS(o -> (!o.hasFailure() && !o.hasSkipped()) ? CriteriaExecutionResult.PASSED : CriteriaExecutionResult.FAILED)
+        ALWAYS_PASS((passed, failed, skipped) -> CriteriaExecutionResult.PASSED),
+        PASS_ONLY_IF_ALL_PASS((passed, failed, skipped) -> (failed == 0 && skipped == 0) ? CriteriaExecutionResult.PASSED : CriteriaExecutionResult.FAILED)
 
         ;
 
-        private Function<CriteriaEvaluationOutput, CriteriaExecutionResult> executionResultProvider;
+        private final ExecutionResultProvider executionResultProvider;
 
         public CriteriaExecutionResult getExecutionResult(CriteriaEvaluationOutput executionOutput) {
-            return executionResultProvider.apply(executionOutput);
+            return getExecutionResult(executionOutput.getExecutionStats());
+        }
+
+        /** For evaluations that only keep the aggregated stats, e.g. batch evaluation */
+        public CriteriaExecutionResult getExecutionResult(CriteriaEvaluationOutput.ExecutionStats executionStats) {
+            return getExecutionResult(executionStats.getPassedCount(), executionStats.getFailedCount(), executionStats.getSkippedCount());
+        }
+
+        /** For evaluations that only keep counters, without allocating any {@code ExecutionStats} */
+        public CriteriaExecutionResult getExecutionResult(int passedCount, int failedCount, int skippedCount) {
+            return executionResultProvider.apply(passedCount, failedCount, skippedCount);
+        }
+
+        /** Counts are of evaluated {@link Criterion} only, those not reached due to early termination are excluded */
+        @FunctionalInterface
+        private interface ExecutionResultProvider {
+            CriteriaExecutionResult apply(int passedCount, int failedCount, int skippedCount);
         }
     }
 
@@ -57,19 +74,62 @@ public class CriteriaEngineEnums {
         private final Function<Criterion<?, ?>, String> executionMessageProvider;
     }
 
+    /** Operators of a declarative criterion, comparing an input field against a threshold */
+    @AllArgsConstructor
+    public enum ComparisonOperator {
+        GTE(c -> c >= 0),
+        GT(c -> c > 0),
+        LTE(c -> c <= 0),
+        LT(c -> c < 0),
+        EQ(c -> c == 0),
+        NEQ(c -> c != 0);
+
+        private final IntPredicate comparisonPredicate;
+
+        /**
+         * @param comparison negative, zero or positive as the input is less than, equal to, or greater than the threshold
+         */
+        public boolean test(int comparison) {
+            return comparisonPredicate.test(comparison);
+        }
+    }
+
     /** Strategies that determine if a {@link CriterionChain} should terminate early */
     @AllArgsConstructor
     public enum CriterionExecutionTerminationStrategy {
-        CONTINUE_ALWAYS(List.of()),
-        TERMINATE_IF_FAILED(List.of(CriterionExecutionResult.FAILED)),
-        TERMINATE_IF_SKIPPED_OR_FAILED(List.of(CriterionExecutionResult.SKIPPED, CriterionExecutionResult.FAILED)),
-        TERMINATE_IF_SKIPPED(List.of(CriterionExecutionResult.SKIPPED)),
-        TERMINATE_IF_PASSED(List.of(CriterionExecutionResult.PASSED));
+        CONTINUE_ALWAYS(EnumSet.noneOf(CriterionExecutionResult.class)),
+        TERMINATE_IF_FAILED(EnumSet.of(CriterionExecutionResult.FAILED)),
+        TERMINATE_IF_SKIPPED_OR_FAILED(EnumSet.of(CriterionExecutionResult.SKIPPED, CriterionExecutionResult.FAILED)),
+        TERMINATE_IF_SKIPPED(EnumSet.of(CriterionExecutionResult.SKIPPED)),
+        TERMINATE_IF_PASSED(EnumSet.of(CriterionExecutionResult.PASSED));
 
-        private final List<CriterionExecutionResult> terminateUpon;
+        /** {@link EnumSet} so that {@link #shouldTerminate} is a bit test, it is called for every {@link Criterion} */
+        private final EnumSet<CriterionExecutionResult> terminateUpon;
 
         public boolean shouldTerminate(CriterionExecutionResult status) {
             return terminateUpon.contains(status);
         }
+
+        /**
+         * @return {@code true} if the {@link CriteriaExecutionResult} is the same whatever the order the {@link Criterion}
+         * are evaluated in, i.e. whether a {@link CriterionChain} may reorder its {@link Criterion}
+         */
+        public boolean isOrderIndependent(CriteriaExecutionResultStrategy resultStrategy) {
+            if (CriteriaExecutionResultStrategy.ALWAYS_PASS.equals(resultStrategy)) {
+                return true;
+            }
+            return switch (this) {
+                // Every criterion is evaluated, so the counts are the same
+                case CONTINUE_ALWAYS -> true;
+                // Any failure fails the criteria, wherever it terminates
+                case TERMINATE_IF_FAILED -> CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL.equals(resultStrategy)
+                        || CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL_OR_SKIP.equals(resultStrategy)
+                        || CriteriaExecutionResultStrategy.PASS_ONLY_IF_ALL_PASS.equals(resultStrategy);
+                case TERMINATE_IF_SKIPPED_OR_FAILED -> CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL_OR_SKIP.equals(resultStrategy)
+                        || CriteriaExecutionResultStrategy.PASS_ONLY_IF_ALL_PASS.equals(resultStrategy);
+                case TERMINATE_IF_SKIPPED -> CriteriaExecutionResultStrategy.FAIL_IF_ANY_SKIP.equals(resultStrategy);
+                case TERMINATE_IF_PASSED -> CriteriaExecutionResultStrategy.FAIL_IF_ALL_FAIL.equals(resultStrategy);
+            };
+        }
     }
 }
@@ -0,0 +1,40 @@
+package com.ncslzh.projects.criteriaengine.constants;
+
+import java.util.Map;
+
+import lombok.NonNull;
+
+/**
+ * Number of decimals amounts in each legal currency are kept at, keyed by {@code legalCurrencySymbol}
+ *
+ * <p>Follows ISO 4217 minor units. Currencies not listed default to {@link #DEFAULT_SCALE}.
+ */
+public final class CurrencyScales {
+
+    private static final int DEFAULT_SCALE = 2;
+
+    private static final Map<String, Integer> SCALES = Map.ofEntries(
+            // No minor unit
+            Map.entry("JPY", 0),
+            Map.entry("KRW", 0),
+            Map.entry("VND", 0),
+            Map.entry("IDR", 0),
+            Map.entry("CLP", 0),
+            Map.entry("PYG", 0),
+            Map.entry("UGX", 0),
+            Map.entry("XAF", 0),
+            Map.entry("XOF", 0),
+            // 3 decimals
+            Map.entry("BHD", 3),
+            Map.entry("JOD", 3),
+            Map.entry("KWD", 3),
+            Map.entry("OMR", 3),
+            Map.entry("TND", 3));
+
+    private CurrencyScales() {
+    }
+
+    public static int scaleOf(@NonNull String legalCurrencySymbol) {
+        return SCALES.getOrDefault(legalCurrencySymbol.toUpperCase(), DEFAULT_SCALE);
+    }
+}
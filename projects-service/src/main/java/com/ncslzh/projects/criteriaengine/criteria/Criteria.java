@@ -3,6 +3,9 @@ package com.ncslzh.projects.criteriaengine.criteria;
 import com.ncslzh.projects.criteriaengine.criterion.Criterion;
 import lombok.NonNull;
 
+import java.util.BitSet;
+import java.util.List;
+
 /**
  * Encapsulates a set of business-defined criteria that should be met
  *
@@ -31,6 +34,37 @@ public interface Criteria<T, U extends Criteria.CriteriaConfig> {
      */
     boolean checkCriteria(@NonNull T input, U config);
 
+    /**
+     * Checks many inputs against the same config, e.g. all candidates of a single matching.
+     *
+     * <p>Implementations should override this to resolve per-config decisions once per batch, see
+     * {@link com.ncslzh.projects.criteriaengine.criterionchain.CriterionChain#checkCriteriaBatch}
+     *
+     * @return bit {@code i} is set if {@code inputs.get(i)} meets the criteria
+     */
+    default BitSet checkCriteriaBatch(@NonNull List<T> inputs, U config) {
+        BitSet passed = new BitSet(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            if (checkCriteria(inputs.get(i), config)) {
+                passed.set(i);
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Same results as {@link #checkCriteriaBatch}, for offline runs over whole populations, e.g. through
+     * {@link com.ncslzh.projects.criteriaengine.pipeline.CriteriaEvaluationPipeline}.
+     *
+     * <p>Implementations should override this to skip what is meant for live traffic only, e.g. metrics, tracing and
+     * shadow evaluation, see {@link com.ncslzh.projects.criteriaengine.criterionchain.CriterionChain#checkCriteriaBatchOffline}
+     *
+     * @return bit {@code i} is set if {@code inputs.get(i)} meets the criteria
+     */
+    default BitSet checkCriteriaOffline(@NonNull List<T> inputs, U config) {
+        return checkCriteriaBatch(inputs, config);
+    }
+
     /**
      * Contains common non-business specific fields that can be used by all {@link Criteria}
      * <p>Implementing classes of the {@link Criteria} interface should also contain another business-specific
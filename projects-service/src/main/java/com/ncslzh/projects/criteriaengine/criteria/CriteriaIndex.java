@@ -0,0 +1,230 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criterionchain.CriterionChain;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaDefinition;
+import lombok.NonNull;
+
+/**
+ * Index of many {@link CriteriaDefinition}s, e.g. one per broker, currency or campaign, to find all of those an input
+ * meets without evaluating each of them in turn.
+ *
+ * <p>For each field, the thresholds of every definition are sorted once, with cumulative {@link BitSet}s of the
+ * definitions each operator fails for the values below or above each threshold. Matching an input is then two binary
+ * searches per field, to locate its value among the thresholds, and one {@link BitSet} OR per field and operator.
+ *
+ * <p>Only definitions whose result is the conjunction of their criteria are indexed, i.e. with a
+ * {@code FAIL_IF_ANY_FAIL}, {@code FAIL_IF_ANY_FAIL_OR_SKIP} or {@code PASS_ONLY_IF_ALL_PASS} result strategy, and
+ * any termination strategy other than {@code TERMINATE_IF_PASSED}. Other definitions are evaluated directly on each
+ * match, as in {@link DeclarativeCriteria}.
+ *
+ * <p>Results are the same as {@link DeclarativeCriteria#checkCriteria} for each definition, except for inputs with a
+ * {@code null} money field: every indexed field is read on each match, so {@link #match} throws
+ * {@link IllegalArgumentException} for the whole index, whereas a definition evaluated on its own may fail without
+ * throwing if an earlier criterion terminated it before that field is read.
+ *
+ * <p>Immutable and thread-safe. Build a new index when definitions change.
+ *
+ * @param <T> Input data against which the criteria will be evaluated
+ */
+public class CriteriaIndex<T> {
+
+    private final List<String> ids;
+    private final BitSet indexed;
+    private final List<FieldIndex<T>> fieldIndexes;
+    private final Map<Integer, CriterionChain<T, CriteriaDefinition>> residualChains;
+    private final Map<Integer, CriteriaDefinition> residualDefinitions;
+
+    /**
+     * @param definitions by id, ids are returned in this order by {@link #match}
+     * @throws IllegalArgumentException if any definition is invalid for {@code accessors}
+     */
+    public CriteriaIndex(
+            @NonNull Map<String, CriteriaDefinition> definitions,
+            @NonNull CriteriaInputAccessors<T> accessors) {
+
+        ids = List.copyOf(definitions.keySet());
+        indexed = new BitSet(ids.size());
+        residualChains = new LinkedHashMap<>();
+        residualDefinitions = new LinkedHashMap<>();
+
+        // Thresholds of each field, then their bits by operator
+        Map<String, TreeMap<BigDecimal, Map<CriteriaEngineEnums.ComparisonOperator, BitSet>>> thresholdsByField = new LinkedHashMap<>();
+
+        for (int bit = 0; bit < ids.size(); bit++) {
+            CriteriaDefinition definition = definitions.get(ids.get(bit));
+            Preconditions.checkArgument(Objects.nonNull(definition), "definition is null, id=%s", ids.get(bit));
+            // Also validates the definition
+            CriterionChain<T, CriteriaDefinition> chain = DeclarativeCriteria.buildChain(definition, accessors);
+
+            if (!isConjunctive(definition)) {
+                residualChains.put(bit, chain);
+                residualDefinitions.put(bit, definition);
+                continue;
+            }
+
+            indexed.set(bit);
+            for (CriteriaDefinition.CriterionDefinition criterion : definition.getCriteria()) {
+                thresholdsByField
+                        .computeIfAbsent(criterion.getField(), field -> new TreeMap<>())
+                        // TreeMap keys by compareTo, so 1.0 and 1.00 are the same threshold
+                        .computeIfAbsent(criterion.getThreshold(), threshold -> new EnumMap<>(CriteriaEngineEnums.ComparisonOperator.class))
+                        .computeIfAbsent(criterion.getOperator(), operator -> new BitSet(ids.size()))
+                        .set(bit);
+            }
+        }
+
+        fieldIndexes = new ArrayList<>(thresholdsByField.size());
+        thresholdsByField.forEach((field, thresholds) -> fieldIndexes.add(new FieldIndex<>(
+                accessors.search(field, List.copyOf(thresholds.keySet())),
+                new ArrayList<>(thresholds.values()))));
+    }
+
+    /**
+     * @return ids of all definitions {@code input} meets, in the order they were given
+     */
+    public List<String> match(@NonNull T input) {
+        BitSet passed = matchBits(input);
+        List<String> matched = new ArrayList<>(passed.cardinality());
+        for (int bit = passed.nextSetBit(0); bit >= 0; bit = passed.nextSetBit(bit + 1)) {
+            matched.add(ids.get(bit));
+        }
+        return matched;
+    }
+
+    /**
+     * @return bit {@code i} is set if {@code input} meets the {@code i}-th definition
+     */
+    public BitSet matchBits(@NonNull T input) {
+        BitSet passed = (BitSet) indexed.clone();
+        for (FieldIndex<T> fieldIndex : fieldIndexes) {
+            fieldIndex.clearFailed(input, passed);
+        }
+
+        residualChains.forEach((bit, chain) -> {
+            CriteriaDefinition definition = residualDefinitions.get(bit);
+            if (CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(
+                    chain.checkCriteriaResult(input, definition, DeclarativeCriteria.resultStrategyOf(definition)))) {
+                passed.set(bit);
+            }
+        });
+        return passed;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    /** @return number of definitions that are evaluated directly rather than through the index */
+    public int getResidualCount() {
+        return residualChains.size();
+    }
+
+    private static boolean isConjunctive(CriteriaDefinition definition) {
+        // DefinedCriterion are never skipped, so skips do not affect the result
+        return switch (DeclarativeCriteria.resultStrategyOf(definition)) {
+            case FAIL_IF_ANY_FAIL, FAIL_IF_ANY_FAIL_OR_SKIP, PASS_ONLY_IF_ALL_PASS ->
+                    !CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_PASSED.equals(
+                            DeclarativeCriteria.terminationStrategyOf(definition));
+            default -> false;
+        };
+    }
+
+    /**
+     * Definitions failing on one field, by where its value falls among the sorted thresholds of that field
+     */
+    private static final class FieldIndex<T> {
+
+        private final CriteriaInputAccessors.ThresholdSearch<T> search;
+        private final int size;
+        /** {@code below[operator][k]}: definitions with an {@code operator} criterion on one of the first k thresholds */
+        private final Map<CriteriaEngineEnums.ComparisonOperator, BitSet[]> below = new EnumMap<>(CriteriaEngineEnums.ComparisonOperator.class);
+        /** {@code from[operator][k]}: definitions with an {@code operator} criterion on threshold k or above */
+        private final Map<CriteriaEngineEnums.ComparisonOperator, BitSet[]> from = new EnumMap<>(CriteriaEngineEnums.ComparisonOperator.class);
+        /** Per threshold, only for {@code NEQ}, which fails on single thresholds */
+        private final BitSet[] notEqual;
+
+        private FieldIndex(
+                CriteriaInputAccessors.ThresholdSearch<T> search,
+                List<Map<CriteriaEngineEnums.ComparisonOperator, BitSet>> bitsByThreshold) {
+            this.search = search;
+            this.size = bitsByThreshold.size();
+            this.notEqual = new BitSet[size];
+
+            for (CriteriaEngineEnums.ComparisonOperator operator : CriteriaEngineEnums.ComparisonOperator.values()) {
+                if (bitsByThreshold.stream().noneMatch(bits -> bits.containsKey(operator))) {
+                    continue;
+                }
+                if (CriteriaEngineEnums.ComparisonOperator.NEQ.equals(operator)) {
+                    for (int i = 0; i < size; i++) {
+                        notEqual[i] = bitsByThreshold.get(i).get(operator);
+                    }
+                    continue;
+                }
+
+                BitSet[] cumulativeBelow = new BitSet[size + 1];
+                cumulativeBelow[0] = new BitSet();
+                for (int i = 0; i < size; i++) {
+                    cumulativeBelow[i + 1] = or(cumulativeBelow[i], bitsByThreshold.get(i).get(operator));
+                }
+                BitSet[] cumulativeFrom = new BitSet[size + 1];
+                cumulativeFrom[size] = new BitSet();
+                for (int i = size - 1; i >= 0; i--) {
+                    cumulativeFrom[i] = or(cumulativeFrom[i + 1], bitsByThreshold.get(i).get(operator));
+                }
+                below.put(operator, cumulativeBelow);
+                from.put(operator, cumulativeFrom);
+            }
+        }
+
+        /**
+         * Thresholds {@code [0, lower)} are below the value, {@code [lower, upper)} equal to it, and the rest above it
+         */
+        private void clearFailed(T input, BitSet passed) {
+            long location = search.locate(input);
+            int lower = (int) (location >>> 32);
+            int upper = (int) location;
+
+            for (Map.Entry<CriteriaEngineEnums.ComparisonOperator, BitSet[]> entry : from.entrySet()) {
+                BitSet[] cumulativeBelow = below.get(entry.getKey());
+                BitSet[] cumulativeFrom = entry.getValue();
+                switch (entry.getKey()) {
+                    case GTE -> passed.andNot(cumulativeFrom[upper]);
+                    case GT -> passed.andNot(cumulativeFrom[lower]);
+                    case LTE -> passed.andNot(cumulativeBelow[lower]);
+                    case LT -> passed.andNot(cumulativeBelow[upper]);
+                    case EQ -> {
+                        passed.andNot(cumulativeBelow[lower]);
+                        passed.andNot(cumulativeFrom[upper]);
+                    }
+                    default -> throw new IllegalStateException("Unexpected operator=" + entry.getKey());
+                }
+            }
+            for (int i = lower; i < upper; i++) {
+                if (Objects.nonNull(notEqual[i])) {
+                    passed.andNot(notEqual[i]);
+                }
+            }
+        }
+
+        private static BitSet or(BitSet cumulative, BitSet bits) {
+            if (Objects.isNull(bits)) {
+                return cumulative;
+            }
+            BitSet result = (BitSet) cumulative.clone();
+            result.or(bits);
+            return result;
+        }
+    }
+}
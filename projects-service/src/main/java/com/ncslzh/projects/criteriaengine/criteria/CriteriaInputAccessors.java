@@ -0,0 +1,251 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criterion.CompiledCriterion;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaDefinition;
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Typed accessors of the fields of an input {@link T}, by the field names used in {@link CriteriaDefinition}s
+ *
+ * <p>{@link #compile} turns a {@link CriteriaDefinition.CriterionDefinition} into a {@link CompiledCriterion} that
+ * reads the field through its accessor and compares it against the threshold as a primitive, without reflection.
+ *
+ * @param <T> Input data against which the criteria will be evaluated
+ */
+public class CriteriaInputAccessors<T> {
+
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final Map<String, Field<T>> fields = new HashMap<>();
+
+    /** For integral fields, e.g. {@code int}, {@code Integer} or {@code Long} getters */
+    public CriteriaInputAccessors<T> longField(@NonNull String field, @NonNull ToLongFunction<T> accessor) {
+        return register(field, new LongField<>(accessor));
+    }
+
+    public CriteriaInputAccessors<T> doubleField(@NonNull String field, @NonNull ToDoubleFunction<T> accessor) {
+        return register(field, new DoubleField<>(accessor));
+    }
+
+    public CriteriaInputAccessors<T> moneyField(@NonNull String field, @NonNull Function<T, FixedPointMoney> accessor) {
+        return register(field, new MoneyField<>(field, accessor));
+    }
+
+    /**
+     * For {@link BigDecimal} amounts, converted at the scale of the input's currency, see
+     * {@link FixedPointMoney#of(BigDecimal, String)}
+     */
+    public CriteriaInputAccessors<T> moneyField(@NonNull String field,
+                                                @NonNull Function<T, BigDecimal> amount,
+                                                @NonNull Function<T, String> legalCurrencySymbol) {
+        return moneyField(field, input -> {
+            BigDecimal value = amount.apply(input);
+            return Objects.isNull(value) ? null : FixedPointMoney.of(value, legalCurrencySymbol.apply(input));
+        });
+    }
+
+    public Set<String> getFields() {
+        return fields.keySet();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the definition is incomplete or its field is not registered
+     */
+    public CompiledCriterion<T> compile(@NonNull CriteriaDefinition.CriterionDefinition definition) {
+        Preconditions.checkArgument(Objects.nonNull(definition.getOperator()), "operator is null, field=%s", definition.getField());
+        Preconditions.checkArgument(Objects.nonNull(definition.getThreshold()), "threshold is null, field=%s", definition.getField());
+        return field(definition.getField()).compile(definition.getOperator(), definition.getThreshold());
+    }
+
+    /**
+     * @param sortedThresholds ascending, as ordered by {@link BigDecimal#compareTo}
+     * @throws IllegalArgumentException if {@code field} is not registered
+     */
+    ThresholdSearch<T> search(@NonNull String field, @NonNull List<BigDecimal> sortedThresholds) {
+        return field(field).search(sortedThresholds);
+    }
+
+    private Field<T> field(String field) {
+        Field<T> accessor = fields.get(field);
+        Preconditions.checkArgument(Objects.nonNull(accessor), "Unknown field=%s, known fields=%s", field, fields.keySet());
+        return accessor;
+    }
+
+    private CriteriaInputAccessors<T> register(String field, Field<T> accessor) {
+        Preconditions.checkArgument(!fields.containsKey(field), "Duplicate field=%s", field);
+        fields.put(field, accessor);
+        return this;
+    }
+
+    /**
+     * Locates the field of inputs among thresholds sorted ascending, see {@link CriteriaIndex}
+     */
+    @FunctionalInterface
+    interface ThresholdSearch<T> {
+
+        /**
+         * @return {@code lower << 32 | upper}, where {@code lower} is the number of thresholds below the field of
+         * {@code input}, and {@code upper} the number of thresholds at or below it
+         */
+        long locate(@NonNull T input);
+    }
+
+    /**
+     * @param comparisonAt comparison of the value against threshold {@code i}, non-increasing in {@code i}
+     * @return see {@link ThresholdSearch#locate}
+     */
+    private static long locate(int size, IntUnaryOperator comparisonAt) {
+        return (long) firstIndex(size, comparisonAt, 0) << 32 | firstIndex(size, comparisonAt, -1);
+    }
+
+    /** @return first index with a comparison {@code <= max}, or {@code size} */
+    private static int firstIndex(int size, IntUnaryOperator comparisonAt, int max) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparisonAt.applyAsInt(middle) <= max) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private interface Field<T> {
+
+        CompiledCriterion<T> compile(CriteriaEngineEnums.ComparisonOperator operator, BigDecimal threshold);
+
+        ThresholdSearch<T> search(List<BigDecimal> sortedThresholds);
+    }
+
+    @AllArgsConstructor
+    private static final class LongField<T> implements Field<T> {
+
+        private final ToLongFunction<T> accessor;
+
+        @Override
+        public CompiledCriterion<T> compile(CriteriaEngineEnums.ComparisonOperator operator, BigDecimal threshold) {
+            int outOfRange = outOfRangeComparison(threshold);
+            if (outOfRange != 0) {
+                // Every value compares the same way
+                boolean matches = operator.test(outOfRange);
+                return input -> matches;
+            }
+            long ceiling = ceiling(threshold);
+            long floor = floor(threshold);
+            return input -> operator.test(compare(accessor.applyAsLong(input), ceiling, floor));
+        }
+
+        @Override
+        public ThresholdSearch<T> search(List<BigDecimal> sortedThresholds) {
+            int size = sortedThresholds.size();
+            int[] outOfRange = new int[size];
+            long[] ceilings = new long[size];
+            long[] floors = new long[size];
+            for (int i = 0; i < size; i++) {
+                BigDecimal threshold = sortedThresholds.get(i);
+                outOfRange[i] = outOfRangeComparison(threshold);
+                if (outOfRange[i] == 0) {
+                    ceilings[i] = ceiling(threshold);
+                    floors[i] = floor(threshold);
+                }
+            }
+            return input -> {
+                long value = accessor.applyAsLong(input);
+                return locate(size, i -> outOfRange[i] != 0 ? outOfRange[i] : compare(value, ceilings[i], floors[i]));
+            };
+        }
+
+        /** @return comparison of any long against {@code threshold} if it is out of the long range, else 0 */
+        private static int outOfRangeComparison(BigDecimal threshold) {
+            if (threshold.compareTo(LONG_MAX) > 0) {
+                return -1;
+            }
+            return threshold.compareTo(LONG_MIN) < 0 ? 1 : 0;
+        }
+
+        private static long ceiling(BigDecimal threshold) {
+            return threshold.setScale(0, RoundingMode.CEILING).longValueExact();
+        }
+
+        private static long floor(BigDecimal threshold) {
+            return threshold.setScale(0, RoundingMode.FLOOR).longValueExact();
+        }
+
+        /** Values are integers, so below the ceiling means below the threshold, and above the floor means above it */
+        private static int compare(long value, long ceiling, long floor) {
+            return value < ceiling ? -1 : (value > floor ? 1 : 0);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class DoubleField<T> implements Field<T> {
+
+        private final ToDoubleFunction<T> accessor;
+
+        @Override
+        public CompiledCriterion<T> compile(CriteriaEngineEnums.ComparisonOperator operator, BigDecimal threshold) {
+            double thresholdValue = threshold.doubleValue();
+            return input -> operator.test(Double.compare(accessor.applyAsDouble(input), thresholdValue));
+        }
+
+        @Override
+        public ThresholdSearch<T> search(List<BigDecimal> sortedThresholds) {
+            // Rounding to doubles keeps the order, though distinct thresholds may become equal
+            double[] thresholds = sortedThresholds.stream().mapToDouble(BigDecimal::doubleValue).toArray();
+            return input -> {
+                double value = accessor.applyAsDouble(input);
+                return locate(thresholds.length, i -> Double.compare(value, thresholds[i]));
+            };
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class MoneyField<T> implements Field<T> {
+
+        private final String field;
+        private final Function<T, FixedPointMoney> accessor;
+
+        @Override
+        public CompiledCriterion<T> compile(CriteriaEngineEnums.ComparisonOperator operator, BigDecimal threshold) {
+            FixedPointMoney.Threshold thresholdValue = FixedPointMoney.threshold(threshold);
+            return input -> operator.test(thresholdValue.compareTo(read(input)));
+        }
+
+        @Override
+        public ThresholdSearch<T> search(List<BigDecimal> sortedThresholds) {
+            FixedPointMoney.Threshold[] thresholds = sortedThresholds.stream()
+                    .map(FixedPointMoney::threshold)
+                    .toArray(FixedPointMoney.Threshold[]::new);
+            return input -> {
+                FixedPointMoney value = read(input);
+                return locate(thresholds.length, i -> thresholds[i].compareTo(value));
+            };
+        }
+
+        private FixedPointMoney read(T input) {
+            FixedPointMoney value = accessor.apply(input);
+            Preconditions.checkArgument(Objects.nonNull(value), "%s is null", field);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criterion.DefinedCriterion;
+import com.ncslzh.projects.criteriaengine.criterionchain.CriterionChain;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaDefinition;
+import com.ncslzh.projects.placeholders.ConfigService;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link Criteria} whose criteria are defined in a {@link CriteriaDefinition} loaded through {@link ConfigService},
+ * so that thresholds, operators and the set of criteria can change without a deployment.
+ *
+ * <p>Each definition instance is compiled once into a {@link CriterionChain} of {@link DefinedCriterion}, kept for as
+ * long as the instance is in use, so evaluations in progress finish on the chain they started with, and alternating
+ * definitions are not recompiled. A definition that fails to compile, e.g. with an unknown field, is logged once and
+ * ignored. {@link #getCriteriaConfig} then returns the last valid definition loaded for the same config name, and
+ * {@link #checkCriteria} evaluates the default definition in place of an invalid one passed directly, e.g. a candidate
+ * being compared, so that candidates never replace the fallback of the live definition.
+ *
+ * @param <T> Input data against which the criteria will be evaluated
+ */
+@Slf4j
+public class DeclarativeCriteria<T> implements Criteria<T, CriteriaDefinition> {
+
+    private static final CriteriaEngineEnums.CriteriaExecutionResultStrategy DEFAULT_RESULT_STRATEGY =
+            CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL;
+    private static final CriteriaEngineEnums.CriterionExecutionTerminationStrategy DEFAULT_TERMINATION_STRATEGY =
+            CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_FAILED;
+    /** Definitions in use at once, e.g. the live definition alongside candidates being compared */
+    private static final int MAX_COMPILED_DEFINITIONS = 16;
+
+    private final ConfigService configService;
+    private final CriteriaInputAccessors<T> accessors;
+    private final CriteriaDefinition defaultDefinition;
+
+    /** Weakly keyed by definition identity, with a {@code null} chain for invalid definitions */
+    private final Cache<CriteriaDefinition, CompiledDefinition<T>> compiledDefinitions = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(MAX_COMPILED_DEFINITIONS)
+            .build();
+    private final CompiledDefinition<T> defaultCompiled;
+    /** Last valid definition loaded through {@link ConfigService}, by config name */
+    private final Map<String, CompiledDefinition<T>> lastValid = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultDefinition used when no definition is configured, must be valid for {@code accessors}
+     * @throws IllegalArgumentException if {@code defaultDefinition} is invalid
+     */
+    public DeclarativeCriteria(
+            @NonNull ConfigService configService,
+            @NonNull CriteriaInputAccessors<T> accessors,
+            @NonNull CriteriaDefinition defaultDefinition) {
+        this.configService = configService;
+        this.accessors = accessors;
+        this.defaultDefinition = defaultDefinition;
+        defaultCompiled = new CompiledDefinition<>(defaultDefinition, buildChain(defaultDefinition, accessors));
+        compiledDefinitions.put(defaultDefinition, defaultCompiled);
+    }
+
+    /**
+     * @return the configured definition, or the last valid one configured for {@code configName} if it fails to compile
+     */
+    @Override
+    public CriteriaDefinition getCriteriaConfig(@NonNull String configName) {
+        CompiledDefinition<T> compiled = compiled(configService.of(configName, defaultDefinition, CriteriaDefinition.class));
+        if (Objects.isNull(compiled.chain)) {
+            return lastValid.getOrDefault(configName, defaultCompiled).definition;
+        }
+        lastValid.put(configName, compiled);
+        return compiled.definition;
+    }
+
+    /**
+     * With {@code isDebugLog}, each evaluation is traced, see {@link CriterionChain#enableTracing}
+     */
+    @Override
+    public boolean checkCriteria(@NonNull T input, @NonNull CriteriaDefinition config) {
+        CompiledDefinition<T> compiled = compiledOrDefault(config);
+        return CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(
+                compiled.chain.checkCriteriaResult(input, compiled.definition, resultStrategyOf(compiled.definition)));
+    }
+
+    @Override
+    public BitSet checkCriteriaBatch(@NonNull List<T> inputs, @NonNull CriteriaDefinition config) {
+        CompiledDefinition<T> compiled = compiledOrDefault(config);
+        return compiled.chain.checkCriteriaBatch(inputs, compiled.definition, resultStrategyOf(compiled.definition));
+    }
+
+    /**
+     * Compiles {@code definition} unless already compiled, so that each definition loaded by {@link ConfigService} is
+     * compiled, or rejected and logged, only once
+     *
+     * @return with a {@code null} chain if {@code definition} is invalid
+     */
+    private CompiledDefinition<T> compiled(CriteriaDefinition definition) {
+        CompiledDefinition<T> cached = compiledDefinitions.getIfPresent(definition);
+        if (Objects.isNull(cached)) {
+            // Lost races are compiled twice, which is harmless
+            cached = compile(definition);
+            compiledDefinitions.put(definition, cached);
+        }
+        return cached;
+    }
+
+    private CompiledDefinition<T> compiledOrDefault(CriteriaDefinition definition) {
+        CompiledDefinition<T> compiled = compiled(definition);
+        return Objects.isNull(compiled.chain) ? defaultCompiled : compiled;
+    }
+
+    private CompiledDefinition<T> compile(CriteriaDefinition definition) {
+        try {
+            CompiledDefinition<T> compiled = new CompiledDefinition<>(definition, buildChain(definition, accessors));
+            log.info("[DeclarativeCriteria][Compile] Compiled definition={}", definition);
+            return compiled;
+        } catch (IllegalArgumentException e) {
+            log.error("[DeclarativeCriteria][Compile] Invalid definition={}, keeping last valid definition, e={}",
+                    definition, e.getMessage());
+            return new CompiledDefinition<>(definition, null);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code definition} is invalid for {@code accessors}
+     */
+    static <T> CriterionChain<T, CriteriaDefinition> buildChain(
+            CriteriaDefinition definition, CriteriaInputAccessors<T> accessors) {
+        Preconditions.checkArgument(Objects.nonNull(definition.getCriteria()), "criteria is null");
+
+        CriterionChain<T, CriteriaDefinition> chain = new CriterionChain<>(
+                terminationStrategyOf(definition));
+        for (CriteriaDefinition.CriterionDefinition criterion : definition.getCriteria()) {
+            Preconditions.checkArgument(Objects.nonNull(criterion), "criterion is null");
+            chain.addCriterion(new DefinedCriterion<>(criterion, accessors));
+        }
+        chain.enableAdaptiveOrdering();
+        chain.enableTracing(DeclarativeCriteria.class.getSimpleName(), 0, null);
+        return chain;
+    }
+
+    static CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategyOf(CriteriaDefinition definition) {
+        return MoreObjects.firstNonNull(definition.getTerminationStrategy(), DEFAULT_TERMINATION_STRATEGY);
+    }
+
+    static CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategyOf(CriteriaDefinition definition) {
+        return MoreObjects.firstNonNull(definition.getResultStrategy(), DEFAULT_RESULT_STRATEGY);
+    }
+
+    @AllArgsConstructor
+    private static final class CompiledDefinition<T> {
+        private final CriteriaDefinition definition;
+        /** {@code null} if {@link #definition} is invalid */
+        private final CriterionChain<T, CriteriaDefinition> chain;
+    }
+}
@@ -1,6 +1,9 @@
 package com.ncslzh.projects.criteriaengine.criteria;
 
 
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
 import com.ncslzh.projects.placeholders.ConfigService;
 import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
 import com.ncslzh.projects.criteriaengine.criterion.Criterion;
@@ -12,26 +15,39 @@ import com.ncslzh.projects.criteriaengine.criterion.MinCompletionRateCriterion;
 import com.ncslzh.projects.criteriaengine.criterion.MinSellOrdersTotalValueSixMonthsCriterion;
 import com.ncslzh.projects.criteriaengine.criterion.MinUniqueTradePartnersCountCriterion;
 import com.ncslzh.projects.criteriaengine.criterionchain.CriterionChain;
-import com.ncslzh.projects.criteriaengine.dto.CriteriaEvaluationOutput;
+import com.ncslzh.projects.criteriaengine.criterionchain.CriterionStats;
+import com.ncslzh.projects.criteriaengine.criterionchain.IncrementalCriterionChain;
+import com.ncslzh.projects.criteriaengine.criterionchain.ShadowEvaluator;
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
+import com.ncslzh.projects.criteriaengine.dto.LazyValue;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
-import lombok.extern.slf4j.Slf4j;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
 
 /**
  * Criteria to check if a given user is considered as low quality or not. <a
  * href="https://okcoin.atlassian.net/browse/PMP-7733">JIRA Link</a>
  */
 @Component
-@Slf4j
 public class LowQualityUsersCriteria
         implements Criteria<
         LowQualityUsersCriteria.CriteriaInput, LowQualityUsersCriteria.CriteriaConfig> {
@@ -39,6 +55,9 @@ public class LowQualityUsersCriteria
     @Resource
     private ConfigService configService;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
     @Resource
     private MinAccountAgeDaysCriterion<CriteriaInput, CriteriaConfig> minAccountAgeDaysCriterion;
 
@@ -68,9 +87,15 @@ public class LowQualityUsersCriteria
 
     private List<Criterion<CriteriaInput, CriteriaConfig>> criteria;
     private CriterionChain<CriteriaInput, CriteriaConfig> criterionChain;
+    private ShadowEvaluator<CriteriaInput, CriteriaConfig> shadowEvaluator;
 
     private static final CriteriaConfig defaultCriteria = new CriteriaConfig();
 
+    private static final double TRACE_SAMPLE_RATE = 0.001;
+    private static final double DEFAULT_SHADOW_SAMPLE_RATE = 0.01;
+    private static final int SHADOW_THREADS = 2;
+    private static final int SHADOW_QUEUE_CAPACITY = 1_000;
+
     private static final CriteriaEngineEnums.CriteriaExecutionResultStrategy criteriaResultStrategy =
             CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL;
 
@@ -92,6 +117,42 @@ public class LowQualityUsersCriteria
         for (Criterion<CriteriaInput, CriteriaConfig> criterion : criteria) {
             criterionChain.addCriterion(criterion);
         }
+        // TERMINATE_IF_FAILED with FAIL_IF_ANY_FAIL, so the order above only matters for performance
+        criterionChain.enableAdaptiveOrdering();
+        criterionChain.bindMetrics(LowQualityUsersCriteria.class.getSimpleName(), meterRegistry);
+        criterionChain.enableTracing(LowQualityUsersCriteria.class.getSimpleName(), TRACE_SAMPLE_RATE, CriteriaInput::getTraceKey);
+
+        shadowEvaluator = ShadowEvaluator.<CriteriaInput, CriteriaConfig>builder()
+                .name(LowQualityUsersCriteria.class.getSimpleName())
+                .criterionChain(criterionChain)
+                .resultStrategy(criteriaResultStrategy)
+                .meterRegistry(meterRegistry)
+                .threads(SHADOW_THREADS)
+                .queueCapacity(SHADOW_QUEUE_CAPACITY)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shadowEvaluator.shutdown();
+    }
+
+    private static double shadowSampleRateOf(CriteriaConfig config) {
+        return Objects.isNull(config.getShadowSampleRate()) ? DEFAULT_SHADOW_SAMPLE_RATE : config.getShadowSampleRate();
+    }
+
+    /**
+     * Incremental mode, for callers that receive per-field updates of makers' stats, e.g. on order completion, see
+     * {@link IncrementalCriterionChain}. Field names are those of {@link CriteriaInput}.
+     *
+     * @param <K> Identifies makers, e.g. by user id
+     */
+    public <K> IncrementalCriterionChain<K, CriteriaInput, CriteriaConfig> incremental(@NonNull CriteriaConfig config) {
+        return new IncrementalCriterionChain<>(criterionChain, config, criteriaResultStrategy);
+    }
+
+    public List<CriterionStats> getCriterionStats() {
+        return criterionChain.getCriterionStats();
     }
 
     @Override
@@ -99,22 +160,50 @@ public class LowQualityUsersCriteria
         return configService.of(configName, defaultCriteria, CriteriaConfig.class);
     }
 
+    /**
+     * Evaluations are traced for a {@code TRACE_SAMPLE_RATE} share of inputs, or all of them with {@code isDebugLog},
+     * see {@link CriterionChain#enableTracing}
+     */
     @Override
     public boolean checkCriteria(@NonNull CriteriaInput input, @NonNull CriteriaConfig config) {
-        CriteriaEvaluationOutput output = criterionChain.checkCriteria(input, config);
-        CriteriaEngineEnums.CriteriaExecutionResult executionResult = criteriaResultStrategy.getExecutionResult(output);
+        input.prefetch();
+        boolean passed = CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(
+                criterionChain.checkCriteriaResult(input, config, criteriaResultStrategy));
+        shadowEvaluator.submit(input, config, config.getShadowCandidates(), shadowSampleRateOf(config));
+        return passed;
+    }
+
+    @Override
+    public BitSet checkCriteriaBatch(@NonNull List<CriteriaInput> inputs, @NonNull CriteriaConfig config) {
+        inputs.forEach(CriteriaInput::prefetch);
+        BitSet passed = criterionChain.checkCriteriaBatch(inputs, config, criteriaResultStrategy);
 
-        if (config.isDebugLog()) {
-            log.info(
-                    "[LowQualityUsersCriteria] input={}, \nconfig={}, \ncriteriaExecutionStrategy={}, \nexecutionResult={}, \noutput={}",
-                    input,
-                    config,
-                    criteriaResultStrategy,
-                    executionResult,
-                    output);
+        for (CriteriaInput input : inputs) {
+            shadowEvaluator.submit(input, config, config.getShadowCandidates(), shadowSampleRateOf(config));
         }
 
-        return CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(executionResult);
+        return passed;
+    }
+
+    /**
+     * Neither recorded to the {@code criteria.*} metrics nor traced, and not shadow evaluated
+     */
+    @Override
+    public BitSet checkCriteriaOffline(@NonNull List<CriteriaInput> inputs, @NonNull CriteriaConfig config) {
+        inputs.forEach(CriteriaInput::prefetch);
+        return criterionChain.checkCriteriaBatchOffline(inputs, config, criteriaResultStrategy);
+    }
+
+    /**
+     * Same results as {@link #checkCriteriaBatch}, for batches already in columnar form, e.g. when screening all ad makers.
+     * Per-user debug logs are not available.
+     */
+    public BitSet checkCriteriaColumnar(@NonNull LowQualityUsersCriteriaColumns columns, @NonNull CriteriaConfig config) {
+        // Columns are evaluated as a plain AND of all configured criteria
+        Preconditions.checkState(
+                CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL.equals(criteriaResultStrategy),
+                "Columnar evaluation requires FAIL_IF_ANY_FAIL");
+        return columns.checkCriteria(config);
     }
 
     @Data
@@ -137,9 +226,63 @@ public class LowQualityUsersCriteria
         private BigDecimal minSellOrdersTotalValueSixMonths;
         private Integer maxLiableOrderDisputesCount;
         private Boolean isDebugLog;
+
+        /**
+         * Configs evaluated in the shadow of this one, by name, to compare their results on live traffic before
+         * switching to one of them, see {@link ShadowEvaluator}. Their own candidates are ignored.
+         */
+        private Map<String, CriteriaConfig> shadowCandidates;
+        /** Share of inputs evaluated against {@link #shadowCandidates}, defaults to {@code DEFAULT_SHADOW_SAMPLE_RATE} */
+        private Double shadowSampleRate;
+
+        /**
+         * Writes the thresholds only, for {@link MemoizedCriteria}, so that results are shared by configs with the same
+         * thresholds across instances, and kept when other fields change, e.g. {@link #shadowCandidates}
+         */
+        public static final Funnel<CriteriaConfig> FUNNEL = (config, into) -> {
+            putNullable(config.getMinAccountAgeDays(), into);
+            putNullable(config.getMinCompletedOrdersCount(), into);
+            putNullable(config.getMinUniqueTradePartnersCount(), into);
+            putNullable(config.getMinCompletionRate(), into);
+            putNullable(config.getMinBuyOrdersTotalValueSixMonths(), into);
+            putNullable(config.getMinSellOrdersTotalValueSixMonths(), into);
+            putNullable(config.getMaxLiableOrderDisputesCount(), into);
+        };
+
+        /** Unset thresholds skip their criterion, so they are written as such rather than as any value */
+        private static void putNullable(Integer threshold, PrimitiveSink into) {
+            into.putBoolean(Objects.nonNull(threshold));
+            if (Objects.nonNull(threshold)) {
+                into.putInt(threshold);
+            }
+        }
+
+        private static void putNullable(Double threshold, PrimitiveSink into) {
+            into.putBoolean(Objects.nonNull(threshold));
+            if (Objects.nonNull(threshold)) {
+                into.putDouble(threshold);
+            }
+        }
+
+        /** Equal thresholds at different scales compare the same way, so they have the same fingerprint */
+        private static void putNullable(BigDecimal threshold, PrimitiveSink into) {
+            into.putBoolean(Objects.nonNull(threshold));
+            if (Objects.nonNull(threshold)) {
+                into.putString(threshold.stripTrailingZeros().toPlainString(), StandardCharsets.UTF_8);
+            }
+        }
     }
 
-    @Data
+    /**
+     * Required inputs are {@link LazyValue}s, so that expensive stats are only fetched if a {@code Criterion} reaches
+     * them. The builder accepts both plain values and {@link LazyValue}s.
+     * <br>{@code toString}, {@code equals} and {@code hashCode} read the fields directly, so that logging an input does
+     * not fetch its stats
+     */
+    @Getter
+    @Setter
+    @ToString(doNotUseGetters = true)
+    @EqualsAndHashCode(doNotUseGetters = true)
     @AllArgsConstructor
     @Builder
     public static class CriteriaInput
@@ -154,19 +297,19 @@ public class LowQualityUsersCriteria
         // Inputs must be provided, but criteria can be null
         // ======== Required Inputs
         @NonNull
-        private Integer accountAgeDays;
+        private LazyValue<Integer> accountAgeDays;
         @NonNull
-        private Integer completedOrdersCount;
+        private LazyValue<Integer> completedOrdersCount;
         @NonNull
-        private Integer uniqueTradePartnersCount;
+        private LazyValue<Integer> uniqueTradePartnersCount;
         @NonNull
-        private Double completionRate;
+        private LazyValue<Double> completionRate;
         @NonNull
-        private BigDecimal buyOrdersTotalValueSixMonths;
+        private LazyValue<FixedPointMoney> buyOrdersTotalValueSixMonths;
         @NonNull
-        private BigDecimal sellOrdersTotalValueSixMonths;
+        private LazyValue<FixedPointMoney> sellOrdersTotalValueSixMonths;
         @NonNull
-        private Integer liableOrderDisputesCount;
+        private LazyValue<Integer> liableOrderDisputesCount;
         // ======== Required Inputs
 
         @NonNull
@@ -179,5 +322,225 @@ public class LowQualityUsersCriteria
         private Integer brokerId;
         @NonNull
         private Long publicAdId;
+
+        @Override
+        public Integer getAccountAgeDays() {
+            return required(accountAgeDays, "accountAgeDays");
+        }
+
+        @Override
+        public Integer getCompletedOrdersCount() {
+            return required(completedOrdersCount, "completedOrdersCount");
+        }
+
+        @Override
+        public Integer getUniqueTradePartnersCount() {
+            return required(uniqueTradePartnersCount, "uniqueTradePartnersCount");
+        }
+
+        @Override
+        public Double getCompletionRate() {
+            return required(completionRate, "completionRate");
+        }
+
+        @Override
+        public BigDecimal getBuyOrdersTotalValueSixMonths() {
+            return required(buyOrdersTotalValueSixMonths, "buyOrdersTotalValueSixMonths").toBigDecimal();
+        }
+
+        @Override
+        public FixedPointMoney getBuyOrdersTotalValueSixMonthsMoney() {
+            return required(buyOrdersTotalValueSixMonths, "buyOrdersTotalValueSixMonths");
+        }
+
+        @Override
+        public BigDecimal getSellOrdersTotalValueSixMonths() {
+            return required(sellOrdersTotalValueSixMonths, "sellOrdersTotalValueSixMonths").toBigDecimal();
+        }
+
+        @Override
+        public FixedPointMoney getSellOrdersTotalValueSixMonthsMoney() {
+            return required(sellOrdersTotalValueSixMonths, "sellOrdersTotalValueSixMonths");
+        }
+
+        @Override
+        public Integer getLiableOrderDisputesCount() {
+            return required(liableOrderDisputesCount, "liableOrderDisputesCount");
+        }
+
+        /**
+         * Writes the user and the required inputs already fetched, for {@link MemoizedCriteria}, without fetching any
+         * other, so that a memoized result saves the fetches the evaluation would make. Results of a user are therefore
+         * reused for the memo's {@code ttl} even if inputs not fetched by the caller have changed since.
+         */
+        public static final Funnel<CriteriaInput> FUNNEL = (input, into) -> {
+            into.putLong(input.userId)
+                    .putInt(input.brokerId)
+                    .putString(input.legalCurrencySymbol, StandardCharsets.UTF_8);
+            putIfFetched(input.accountAgeDays, (value, sink) -> sink.putInt(value), into);
+            putIfFetched(input.completedOrdersCount, (value, sink) -> sink.putInt(value), into);
+            putIfFetched(input.uniqueTradePartnersCount, (value, sink) -> sink.putInt(value), into);
+            putIfFetched(input.completionRate, (value, sink) -> sink.putDouble(value), into);
+            putIfFetched(input.buyOrdersTotalValueSixMonths, CriteriaInput::putMoney, into);
+            putIfFetched(input.sellOrdersTotalValueSixMonths, CriteriaInput::putMoney, into);
+            putIfFetched(input.liableOrderDisputesCount, (value, sink) -> sink.putInt(value), into);
+        };
+
+        private static <V> void putIfFetched(LazyValue<V> input, BiConsumer<V, PrimitiveSink> writer, PrimitiveSink into) {
+            // Resolved values are returned without fetching
+            V value = input.isResolved() ? input.get() : null;
+            into.putBoolean(Objects.nonNull(value));
+            if (Objects.nonNull(value)) {
+                writer.accept(value, into);
+            }
+        }
+
+        /** Equal amounts at different scales have different fingerprints, which only costs a cache miss */
+        private static void putMoney(FixedPointMoney value, PrimitiveSink into) {
+            into.putLong(value.getUnits()).putInt(value.getScale());
+        }
+
+        /**
+         * Required inputs are non-null once fetched as well, as {@link LazyValue#lazy} and {@link LazyValue#async}
+         * loaders cannot be checked up front
+         */
+        private static <V> V required(LazyValue<V> input, String name) {
+            V value = input.get();
+            if (Objects.isNull(value)) {
+                throw new NullPointerException(name + " is marked non-null but is null");
+            }
+            return value;
+        }
+
+        /** Starts fetching all {@link LazyValue#async} inputs in parallel */
+        public void prefetch() {
+            accountAgeDays.prefetch();
+            completedOrdersCount.prefetch();
+            uniqueTradePartnersCount.prefetch();
+            completionRate.prefetch();
+            buyOrdersTotalValueSixMonths.prefetch();
+            sellOrdersTotalValueSixMonths.prefetch();
+            liableOrderDisputesCount.prefetch();
+        }
+
+        /** Identifies the input in trace events, without fetching any lazy input */
+        public String getTraceKey() {
+            return String.format("userId=%s, brokerId=%s, publicAdId=%s", userId, brokerId, publicAdId);
+        }
+
+        public static class CriteriaInputBuilder {
+
+            /** {@link BigDecimal} amounts, converted at the scale of {@code legalCurrencySymbol} by {@link #build()} */
+            private BigDecimal buyOrdersTotalValueSixMonthsAmount;
+            private BigDecimal sellOrdersTotalValueSixMonthsAmount;
+
+            public CriteriaInputBuilder accountAgeDays(@NonNull Integer accountAgeDays) {
+                return accountAgeDays(LazyValue.of(accountAgeDays));
+            }
+
+            public CriteriaInputBuilder accountAgeDays(LazyValue<Integer> accountAgeDays) {
+                this.accountAgeDays = accountAgeDays;
+                return this;
+            }
+
+            public CriteriaInputBuilder completedOrdersCount(@NonNull Integer completedOrdersCount) {
+                return completedOrdersCount(LazyValue.of(completedOrdersCount));
+            }
+
+            public CriteriaInputBuilder completedOrdersCount(LazyValue<Integer> completedOrdersCount) {
+                this.completedOrdersCount = completedOrdersCount;
+                return this;
+            }
+
+            public CriteriaInputBuilder uniqueTradePartnersCount(@NonNull Integer uniqueTradePartnersCount) {
+                return uniqueTradePartnersCount(LazyValue.of(uniqueTradePartnersCount));
+            }
+
+            public CriteriaInputBuilder uniqueTradePartnersCount(LazyValue<Integer> uniqueTradePartnersCount) {
+                this.uniqueTradePartnersCount = uniqueTradePartnersCount;
+                return this;
+            }
+
+            public CriteriaInputBuilder completionRate(@NonNull Double completionRate) {
+                return completionRate(LazyValue.of(completionRate));
+            }
+
+            public CriteriaInputBuilder completionRate(LazyValue<Double> completionRate) {
+                this.completionRate = completionRate;
+                return this;
+            }
+
+            /**
+             * Adapter for {@link BigDecimal} amounts, prefer {@link FixedPointMoney}. Kept at the scale of
+             * {@code legalCurrencySymbol}, see {@link FixedPointMoney#of(BigDecimal, String)}
+             */
+            public CriteriaInputBuilder buyOrdersTotalValueSixMonths(@NonNull BigDecimal buyOrdersTotalValueSixMonths) {
+                this.buyOrdersTotalValueSixMonths = null;
+                this.buyOrdersTotalValueSixMonthsAmount = buyOrdersTotalValueSixMonths;
+                return this;
+            }
+
+            public CriteriaInputBuilder buyOrdersTotalValueSixMonths(@NonNull FixedPointMoney buyOrdersTotalValueSixMonths) {
+                return buyOrdersTotalValueSixMonths(LazyValue.of(buyOrdersTotalValueSixMonths));
+            }
+
+            public CriteriaInputBuilder buyOrdersTotalValueSixMonths(LazyValue<FixedPointMoney> buyOrdersTotalValueSixMonths) {
+                this.buyOrdersTotalValueSixMonths = buyOrdersTotalValueSixMonths;
+                this.buyOrdersTotalValueSixMonthsAmount = null;
+                return this;
+            }
+
+            /**
+             * Adapter for {@link BigDecimal} amounts, prefer {@link FixedPointMoney}. Kept at the scale of
+             * {@code legalCurrencySymbol}, see {@link FixedPointMoney#of(BigDecimal, String)}
+             */
+            public CriteriaInputBuilder sellOrdersTotalValueSixMonths(@NonNull BigDecimal sellOrdersTotalValueSixMonths) {
+                this.sellOrdersTotalValueSixMonths = null;
+                this.sellOrdersTotalValueSixMonthsAmount = sellOrdersTotalValueSixMonths;
+                return this;
+            }
+
+            public CriteriaInputBuilder sellOrdersTotalValueSixMonths(@NonNull FixedPointMoney sellOrdersTotalValueSixMonths) {
+                return sellOrdersTotalValueSixMonths(LazyValue.of(sellOrdersTotalValueSixMonths));
+            }
+
+            public CriteriaInputBuilder sellOrdersTotalValueSixMonths(LazyValue<FixedPointMoney> sellOrdersTotalValueSixMonths) {
+                this.sellOrdersTotalValueSixMonths = sellOrdersTotalValueSixMonths;
+                this.sellOrdersTotalValueSixMonthsAmount = null;
+                return this;
+            }
+
+            public CriteriaInputBuilder liableOrderDisputesCount(@NonNull Integer liableOrderDisputesCount) {
+                return liableOrderDisputesCount(LazyValue.of(liableOrderDisputesCount));
+            }
+
+            public CriteriaInputBuilder liableOrderDisputesCount(LazyValue<Integer> liableOrderDisputesCount) {
+                this.liableOrderDisputesCount = liableOrderDisputesCount;
+                return this;
+            }
+
+            public CriteriaInput build() {
+                return new CriteriaInput(
+                        accountAgeDays,
+                        completedOrdersCount,
+                        uniqueTradePartnersCount,
+                        completionRate,
+                        inCurrency(buyOrdersTotalValueSixMonthsAmount, buyOrdersTotalValueSixMonths),
+                        inCurrency(sellOrdersTotalValueSixMonthsAmount, sellOrdersTotalValueSixMonths),
+                        liableOrderDisputesCount,
+                        legalCurrencySymbol,
+                        userId,
+                        brokerId,
+                        publicAdId);
+            }
+
+            private LazyValue<FixedPointMoney> inCurrency(BigDecimal amount, LazyValue<FixedPointMoney> money) {
+                if (Objects.isNull(amount)) {
+                    return money;
+                }
+                Preconditions.checkArgument(Objects.nonNull(legalCurrencySymbol), "legalCurrencySymbol is null");
+                return LazyValue.of(FixedPointMoney.of(amount, legalCurrencySymbol));
+            }
+        }
     }
 }
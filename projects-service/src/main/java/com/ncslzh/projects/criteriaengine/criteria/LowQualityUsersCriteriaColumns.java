@@ -0,0 +1,191 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Columnar form of many {@link LowQualityUsersCriteria.CriteriaInput}s, one primitive array per required input, for
+ * screening large batches of users with {@link LowQualityUsersCriteria#checkCriteriaColumnar}.
+ *
+ * <p>Each criterion is applied to a whole column in a branch-free loop over primitives, which the JIT can unroll and
+ * auto-vectorise, instead of one boxed {@code Criterion} call per user.
+ *
+ * <p>Order values are scaled longs: {@code value * 10^valueScale}, which must be exact, e.g. with
+ * {@code BigDecimal#movePointRight(valueScale).longValueExact()}.
+ */
+@Getter
+public class LowQualityUsersCriteriaColumns {
+
+    private final int size;
+    private final int[] accountAgeDays;
+    private final int[] completedOrdersCount;
+    private final int[] uniqueTradePartnersCount;
+    private final double[] completionRate;
+    private final long[] buyOrdersTotalValueSixMonths;
+    private final long[] sellOrdersTotalValueSixMonths;
+    private final int[] liableOrderDisputesCount;
+    private final int valueScale;
+
+    public LowQualityUsersCriteriaColumns(
+            @NonNull int[] accountAgeDays,
+            @NonNull int[] completedOrdersCount,
+            @NonNull int[] uniqueTradePartnersCount,
+            @NonNull double[] completionRate,
+            @NonNull long[] buyOrdersTotalValueSixMonths,
+            @NonNull long[] sellOrdersTotalValueSixMonths,
+            @NonNull int[] liableOrderDisputesCount,
+            int valueScale) {
+
+        size = accountAgeDays.length;
+        Preconditions.checkArgument(completedOrdersCount.length == size
+                && uniqueTradePartnersCount.length == size
+                && completionRate.length == size
+                && buyOrdersTotalValueSixMonths.length == size
+                && sellOrdersTotalValueSixMonths.length == size
+                && liableOrderDisputesCount.length == size, "All columns must have the same length");
+        Preconditions.checkArgument(valueScale >= 0, "valueScale (%s) must be >= 0", valueScale);
+
+        this.accountAgeDays = accountAgeDays;
+        this.completedOrdersCount = completedOrdersCount;
+        this.uniqueTradePartnersCount = uniqueTradePartnersCount;
+        this.completionRate = completionRate;
+        this.buyOrdersTotalValueSixMonths = buyOrdersTotalValueSixMonths;
+        this.sellOrdersTotalValueSixMonths = sellOrdersTotalValueSixMonths;
+        this.liableOrderDisputesCount = liableOrderDisputesCount;
+        this.valueScale = valueScale;
+    }
+
+    /**
+     * Converts row inputs, fetching all of their lazy inputs
+     *
+     * @throws ArithmeticException if an order value has more than {@code valueScale} decimals or does not fit a long
+     */
+    public static LowQualityUsersCriteriaColumns of(
+            @NonNull List<LowQualityUsersCriteria.CriteriaInput> inputs, int valueScale) {
+
+        int size = inputs.size();
+        int[] accountAgeDays = new int[size];
+        int[] completedOrdersCount = new int[size];
+        int[] uniqueTradePartnersCount = new int[size];
+        double[] completionRate = new double[size];
+        long[] buyOrdersTotalValueSixMonths = new long[size];
+        long[] sellOrdersTotalValueSixMonths = new long[size];
+        int[] liableOrderDisputesCount = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            LowQualityUsersCriteria.CriteriaInput input = inputs.get(i);
+            accountAgeDays[i] = input.getAccountAgeDays();
+            completedOrdersCount[i] = input.getCompletedOrdersCount();
+            uniqueTradePartnersCount[i] = input.getUniqueTradePartnersCount();
+            completionRate[i] = input.getCompletionRate();
+            buyOrdersTotalValueSixMonths[i] = scaledUnits(input.getBuyOrdersTotalValueSixMonthsMoney(), valueScale);
+            sellOrdersTotalValueSixMonths[i] = scaledUnits(input.getSellOrdersTotalValueSixMonthsMoney(), valueScale);
+            liableOrderDisputesCount[i] = input.getLiableOrderDisputesCount();
+        }
+
+        return new LowQualityUsersCriteriaColumns(
+                accountAgeDays,
+                completedOrdersCount,
+                uniqueTradePartnersCount,
+                completionRate,
+                buyOrdersTotalValueSixMonths,
+                sellOrdersTotalValueSixMonths,
+                liableOrderDisputesCount,
+                valueScale);
+    }
+
+    private static long scaledUnits(FixedPointMoney value, int valueScale) {
+        if (value.getScale() == valueScale) {
+            return value.getUnits();
+        }
+        return value.toBigDecimal().movePointRight(valueScale).longValueExact();
+    }
+
+    /**
+     * Applies every criterion configured in {@code config} and ANDs the results, which is the outcome of
+     * {@code FAIL_IF_ANY_FAIL} with {@code TERMINATE_IF_FAILED} or {@code CONTINUE_ALWAYS}, as skipped criteria cannot
+     * fail.
+     *
+     * <p>Same results as the row-wise evaluation, except for {@code completionRate}: NaN passes as with
+     * {@link Double#compareTo}, but {@code -0.0} is not ordered below {@code 0.0}.
+     *
+     * @return bit {@code i} is set if user {@code i} passed
+     */
+    BitSet checkCriteria(@NonNull LowQualityUsersCriteria.CriteriaConfig config) {
+        boolean[] passed = new boolean[size];
+        Arrays.fill(passed, true);
+
+        if (Objects.nonNull(config.getMinAccountAgeDays())) {
+            atLeast(passed, accountAgeDays, config.getMinAccountAgeDays());
+        }
+        if (Objects.nonNull(config.getMinCompletedOrdersCount())) {
+            atLeast(passed, completedOrdersCount, config.getMinCompletedOrdersCount());
+        }
+        if (Objects.nonNull(config.getMinUniqueTradePartnersCount())) {
+            atLeast(passed, uniqueTradePartnersCount, config.getMinUniqueTradePartnersCount());
+        }
+        if (Objects.nonNull(config.getMinCompletionRate())) {
+            atLeast(passed, completionRate, config.getMinCompletionRate());
+        }
+        if (Objects.nonNull(config.getMinBuyOrdersTotalValueSixMonths())) {
+            atLeast(passed, buyOrdersTotalValueSixMonths, scaledThreshold(config.getMinBuyOrdersTotalValueSixMonths()));
+        }
+        if (Objects.nonNull(config.getMinSellOrdersTotalValueSixMonths())) {
+            atLeast(passed, sellOrdersTotalValueSixMonths, scaledThreshold(config.getMinSellOrdersTotalValueSixMonths()));
+        }
+        if (Objects.nonNull(config.getMaxLiableOrderDisputesCount())) {
+            atMost(passed, liableOrderDisputesCount, config.getMaxLiableOrderDisputesCount());
+        }
+
+        BitSet result = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (passed[i]) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rounded up, so that for values exact at {@link #valueScale}, {@code value >= threshold} holds exactly when
+     * {@code scaledValue >= scaledThreshold}
+     */
+    private long scaledThreshold(BigDecimal threshold) {
+        return threshold.setScale(valueScale, RoundingMode.CEILING).unscaledValue().longValueExact();
+    }
+
+    // Non-short-circuit & keeps the loops branch-free
+
+    private static void atLeast(boolean[] passed, int[] column, int min) {
+        for (int i = 0; i < passed.length; i++) {
+            passed[i] &= column[i] >= min;
+        }
+    }
+
+    private static void atLeast(boolean[] passed, long[] column, long min) {
+        for (int i = 0; i < passed.length; i++) {
+            passed[i] &= column[i] >= min;
+        }
+    }
+
+    private static void atLeast(boolean[] passed, double[] column, double min) {
+        for (int i = 0; i < passed.length; i++) {
+            passed[i] &= !(column[i] < min);
+        }
+    }
+
+    private static void atMost(boolean[] passed, int[] column, int max) {
+        for (int i = 0; i < passed.length; i++) {
+            passed[i] &= column[i] <= max;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.ncslzh.projects.cache.CacheService;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decorates a {@link Criteria} with a cache of results, for inputs that are evaluated repeatedly with identical values,
+ * e.g. the same maker across many ads within a matching cycle.
+ *
+ * <p>Results are keyed by a 128-bit fingerprint of the criterion-relevant input fields, written by {@code inputFunnel},
+ * and of the config's thresholds, written by {@code configFunnel}, so that a threshold change never serves stale
+ * results. The fingerprint only depends on the values written, not on {@code hashCode}s, so that it is stable across
+ * instances and restarts. Results are cached in-process up to {@code maximumSize} for {@code ttl}, and optionally in
+ * Redis through {@code cacheService} to share them across instances.
+ *
+ * <p>{@code inputFunnel} should not fetch lazy inputs, or every evaluation pays for them, hit or miss: key on the subject
+ * and the inputs already fetched instead, as {@link LowQualityUsersCriteria.CriteriaInput#FUNNEL} does. Evaluations with
+ * {@code isDebugLog} bypass the cache, so that their detailed output is still logged.
+ */
+@Slf4j
+public class MemoizedCriteria<T, U extends Criteria.CriteriaConfig> implements Criteria<T, U> {
+
+    private static final String REDIS_KEY_S = "criteria:memo:%s:%s";
+    private static final String PASSED = "1";
+    private static final String FAILED = "0";
+
+    private final Criteria<T, U> delegate;
+    private final Funnel<? super T> inputFunnel;
+    private final Funnel<? super U> configFunnel;
+    private final String name;
+    private final Duration ttl;
+    /** {@code null} if results are only cached in-process */
+    private final CacheService cacheService;
+
+    private final Cache<HashCode, Boolean> localResults;
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+
+    /**
+     * @param configFunnel must write every config field that affects results, e.g. thresholds, and nothing else
+     * @param name         distinguishes the Redis keys of different criteria
+     * @param cacheService optional Redis tier
+     */
+    @Builder
+    public MemoizedCriteria(
+            @NonNull Criteria<T, U> delegate,
+            @NonNull Funnel<? super T> inputFunnel,
+            @NonNull Funnel<? super U> configFunnel,
+            @NonNull String name,
+            long maximumSize,
+            @NonNull Duration ttl,
+            CacheService cacheService) {
+        Preconditions.checkArgument(maximumSize > 0, "maximumSize (%s) must be > 0", maximumSize);
+
+        this.delegate = delegate;
+        this.inputFunnel = inputFunnel;
+        this.configFunnel = configFunnel;
+        this.name = name;
+        this.ttl = ttl;
+        this.cacheService = cacheService;
+        this.localResults = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public U getCriteriaConfig(String configName) {
+        return delegate.getCriteriaConfig(configName);
+    }
+
+    @Override
+    public boolean checkCriteria(@NonNull T input, U config) {
+        if (config.isDebugLog()) {
+            return delegate.checkCriteria(input, config);
+        }
+
+        HashCode fingerprint = fingerprint(input, config);
+        Boolean passed = localResults.getIfPresent(fingerprint);
+        if (Objects.nonNull(passed)) {
+            return passed;
+        }
+
+        passed = getFromRedis(fingerprint);
+        if (Objects.isNull(passed)) {
+            passed = delegate.checkCriteria(input, config);
+            setInRedis(fingerprint, passed);
+        }
+        localResults.put(fingerprint, passed);
+        return passed;
+    }
+
+    /** @return stats of the in-process cache */
+    public CacheStats getLocalStats() {
+        return localResults.stats();
+    }
+
+    /** @return share of evaluations served from either cache tier */
+    public double getHitRate() {
+        CacheStats localStats = localResults.stats();
+        long requests = localStats.requestCount();
+        return requests == 0 ? 0 : (double) (localStats.hitCount() + redisHits.sum()) / requests;
+    }
+
+    public long getRedisHitCount() {
+        return redisHits.sum();
+    }
+
+    public long getRedisMissCount() {
+        return redisMisses.sum();
+    }
+
+    private HashCode fingerprint(T input, U config) {
+        return Hashing.murmur3_128().newHasher()
+                .putObject(input, inputFunnel)
+                .putObject(config, configFunnel)
+                .hash();
+    }
+
+    private Boolean getFromRedis(HashCode fingerprint) {
+        if (Objects.isNull(cacheService)) {
+            return null;
+        }
+        try {
+            String value = cacheService.get(redisKey(fingerprint));
+            if (Objects.isNull(value)) {
+                redisMisses.increment();
+                return null;
+            }
+            redisHits.increment();
+            return PASSED.equals(value);
+        } catch (Exception e) {
+            log.error("[MemoizedCriteria][Get] Exception getting name={}, e={}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private void setInRedis(HashCode fingerprint, boolean passed) {
+        if (Objects.isNull(cacheService)) {
+            return;
+        }
+        try {
+            cacheService.set(redisKey(fingerprint), passed ? PASSED : FAILED, ttl);
+        } catch (Exception e) {
+            log.error("[MemoizedCriteria][Set] Exception setting name={}, e={}", name, e.getMessage());
+        }
+    }
+
+    private String redisKey(HashCode fingerprint) {
+        return String.format(REDIS_KEY_S, name, fingerprint);
+    }
+}
@@ -0,0 +1,15 @@
+package com.ncslzh.projects.criteriaengine.criterion;
+
+import lombok.NonNull;
+
+/**
+ * A {@link Criterion} specialised for a single config, with config values already resolved
+ *
+ * @param <T> Input data against which the criterion will be evaluated using
+ * @see Criterion#compile(com.ncslzh.projects.criteriaengine.criteria.Criteria.CriteriaConfig)
+ */
+@FunctionalInterface
+public interface CompiledCriterion<T> {
+
+    boolean matches(@NonNull T input);
+}
@@ -1,5 +1,13 @@
 package com.ncslzh.projects.criteriaengine.criterion;
 
+import java.beans.Introspector;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
 import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
 import com.ncslzh.projects.criteriaengine.criteria.Criteria;
 import lombok.NonNull;
@@ -17,23 +25,65 @@ public interface Criterion<T, U extends Criteria.CriteriaConfig> {
         return Boolean.TRUE.equals(config.getIsDebugLog());
     }
 
+    /** Name used in outputs, logs and stats */
+    default String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * Names of the input fields this criterion reads, e.g. {@code accountAgeDays}, so that it is only re-evaluated when
+     * one of them changes, see {@link com.ncslzh.projects.criteriaengine.criterionchain.IncrementalCriterionChain}.
+     *
+     * <p>By default, the abstract getters of the {@code RequiredInput} interface bounding the input type parameter of
+     * the implementing class, found by reflection. Meant to be called once, when setting up an evaluation.
+     *
+     * @return empty if unknown, in which case the criterion is re-evaluated on every change
+     */
+    default Set<String> inputDependencies() {
+        Set<String> fields = new LinkedHashSet<>();
+        for (Class<?> clazz = getClass(); Objects.nonNull(clazz); clazz = clazz.getSuperclass()) {
+            for (TypeVariable<?> typeParameter : clazz.getTypeParameters()) {
+                for (Type bound : typeParameter.getBounds()) {
+                    // Bounds of the config type parameter are CriteriaConfig
+                    if (bound instanceof Class<?> boundClass && boundClass.isInterface()
+                            && !Criteria.CriteriaConfig.class.isAssignableFrom(boundClass)) {
+                        for (Method method : boundClass.getMethods()) {
+                            if (!method.isDefault() && method.getParameterCount() == 0 && method.getName().startsWith("get")) {
+                                fields.add(Introspector.decapitalize(method.getName().substring(3)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return fields;
+    }
+
     /** Custom messages can be over-ridden by implementing classes */
     default String getFailedMessage() {
-        return String.format("%-25s | Failed", this.getClass().getSimpleName());
+        return String.format("%-25s | Failed", getName());
     }
 
     default String getPassedMessage() {
-        return String.format("%-25s | Passed", this.getClass().getSimpleName());
+        return String.format("%-25s | Passed", getName());
     }
 
     default String getSkippedMessage() {
-        return String.format("%-25s | Skipped", this.getClass().getSimpleName());
+        return String.format("%-25s | Skipped", getName());
     }
 
     /** Main method to be used when checking if a criterion passes or not. */
     default CriteriaEngineEnums.CriterionExecutionResult matchesCriterion(@NonNull T input, @NonNull U config) {
+        return matchesCriterion(input, config, shouldCheckCriterion(config));
+    }
+
+    /**
+     * Same as {@link #matchesCriterion(Object, Criteria.CriteriaConfig)}, with the result of {@link #shouldCheckCriterion}
+     * already resolved, so that it is only resolved once per config when evaluating many inputs
+     */
+    default CriteriaEngineEnums.CriterionExecutionResult matchesCriterion(@NonNull T input, @NonNull U config, boolean shouldCheck) {
 
-        if (!shouldCheckCriterion(config)) {
+        if (!shouldCheck) {
             return CriteriaEngineEnums.CriterionExecutionResult.SKIPPED;
         }
 
@@ -47,4 +97,15 @@ public interface Criterion<T, U extends Criteria.CriteriaConfig> {
 
     /** Actual evaluation logic function */
     boolean matchesCriterionCore(@NonNull T input, @NonNull U config);
+
+    /**
+     * Specialises {@link #matchesCriterionCore} for {@code config}, only called if {@link #shouldCheckCriterion} is
+     * {@code true} for it.
+     *
+     * <p>Implementing classes should over-ride this to read config values once, into primitives where possible, instead
+     * of on every evaluation. The returned {@link CompiledCriterion} must behave exactly as {@link #matchesCriterionCore}.
+     */
+    default CompiledCriterion<T> compile(@NonNull U config) {
+        return input -> matchesCriterionCore(input, config);
+    }
 }
@@ -0,0 +1,59 @@
+package com.ncslzh.projects.criteriaengine.criterion;
+
+import java.util.Set;
+
+import com.ncslzh.projects.criteriaengine.criteria.CriteriaInputAccessors;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaDefinition;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A {@link Criterion} defined by a {@link CriteriaDefinition.CriterionDefinition} rather than in code, compiled once
+ * through {@link CriteriaInputAccessors} when the definition is loaded
+ *
+ * @param <T> Input data against which the criterion will be evaluated
+ */
+public class DefinedCriterion<T> implements Criterion<T, CriteriaDefinition> {
+
+    @Getter
+    private final CriteriaDefinition.CriterionDefinition definition;
+    private final CompiledCriterion<T> compiled;
+    private final String name;
+
+    /**
+     * @throws IllegalArgumentException if {@code definition} is invalid for {@code accessors}
+     */
+    public DefinedCriterion(
+            @NonNull CriteriaDefinition.CriterionDefinition definition,
+            @NonNull CriteriaInputAccessors<T> accessors) {
+        this.definition = definition;
+        this.compiled = accessors.compile(definition);
+        this.name = String.format("%s %s %s",
+                definition.getField(), definition.getOperator(), definition.getThreshold().toPlainString());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<String> inputDependencies() {
+        return Set.of(definition.getField());
+    }
+
+    @Override
+    public boolean shouldCheckCriterion(@NonNull CriteriaDefinition config) {
+        return true;
+    }
+
+    @Override
+    public boolean matchesCriterionCore(@NonNull T input, @NonNull CriteriaDefinition config) {
+        return compiled.matches(input);
+    }
+
+    @Override
+    public CompiledCriterion<T> compile(@NonNull CriteriaDefinition config) {
+        return compiled;
+    }
+}
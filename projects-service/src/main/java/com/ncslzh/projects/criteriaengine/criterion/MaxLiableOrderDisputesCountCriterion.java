@@ -26,6 +26,15 @@ public class MaxLiableOrderDisputesCountCriterion<
         return input.getLiableOrderDisputesCount() <= config.getMaxLiableOrderDisputesCount();
     }
 
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        int maxLiableOrderDisputesCount = config.getMaxLiableOrderDisputesCount();
+        return input -> {
+            Preconditions.checkArgument(Objects.nonNull(input.getLiableOrderDisputesCount()), "LiableOrderDisputes is null");
+            return input.getLiableOrderDisputesCount() <= maxLiableOrderDisputesCount;
+        };
+    }
+
     public interface RequiredInput {
         Integer getLiableOrderDisputesCount();
     }
@@ -26,6 +26,15 @@ public class MinAccountAgeDaysCriterion<
         return input.getAccountAgeDays() >= config.getMinAccountAgeDays();
     }
 
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        int minAccountAgeDays = config.getMinAccountAgeDays();
+        return input -> {
+            Preconditions.checkArgument(Objects.nonNull(input.getAccountAgeDays()), "AccountAgeDays is null");
+            return input.getAccountAgeDays() >= minAccountAgeDays;
+        };
+    }
+
     public interface RequiredInput {
         Integer getAccountAgeDays();
     }
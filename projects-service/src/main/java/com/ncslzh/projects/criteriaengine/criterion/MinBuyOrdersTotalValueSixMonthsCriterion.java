@@ -5,6 +5,7 @@ import java.util.Objects;
 
 import com.google.common.base.Preconditions;
 import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -30,8 +31,25 @@ public class MinBuyOrdersTotalValueSixMonthsCriterion<
                 >= 0;
     }
 
+    /** Compares fixed-point amounts against the threshold pre-computed per scale, a primitive comparison */
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        FixedPointMoney.Threshold minBuyOrdersTotalValueSixMonths = FixedPointMoney.threshold(config.getMinBuyOrdersTotalValueSixMonths());
+        return input -> {
+            FixedPointMoney value = input.getBuyOrdersTotalValueSixMonthsMoney();
+            Preconditions.checkArgument(Objects.nonNull(value), "BuyOrderTotalValue is null");
+            return minBuyOrdersTotalValueSixMonths.isMetBy(value);
+        };
+    }
+
     public interface RequiredInput {
         BigDecimal getBuyOrdersTotalValueSixMonths();
+
+        /** Inputs holding fixed-point amounts should over-ride this to avoid converting */
+        default FixedPointMoney getBuyOrdersTotalValueSixMonthsMoney() {
+            BigDecimal value = getBuyOrdersTotalValueSixMonths();
+            return Objects.isNull(value) ? null : FixedPointMoney.of(value);
+        }
     }
 
     public interface RequiredConfig extends Criteria.CriteriaConfig {
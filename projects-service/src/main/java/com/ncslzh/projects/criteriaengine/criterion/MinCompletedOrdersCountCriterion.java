@@ -27,6 +27,15 @@ public class MinCompletedOrdersCountCriterion<
         return input.getCompletedOrdersCount() >= config.getMinCompletedOrdersCount();
     }
 
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        int minCompletedOrdersCount = config.getMinCompletedOrdersCount();
+        return input -> {
+            Preconditions.checkArgument(Objects.nonNull(input.getCompletedOrdersCount()), "CompletedOrdersCount is null");
+            return input.getCompletedOrdersCount() >= minCompletedOrdersCount;
+        };
+    }
+
     public interface RequiredInput {
         Integer getCompletedOrdersCount();
     }
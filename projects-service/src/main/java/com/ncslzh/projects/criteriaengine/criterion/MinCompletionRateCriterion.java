@@ -28,6 +28,15 @@ public class MinCompletionRateCriterion<
         return input.getCompletionRate().compareTo(config.getMinCompletionRate()) >= 0;
     }
 
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        double minCompletionRate = config.getMinCompletionRate();
+        return input -> {
+            Preconditions.checkArgument(Objects.nonNull(input.getCompletionRate()), "CompletionRate is null");
+            // Same ordering as Double#compareTo, without boxing the threshold
+            return Double.compare(input.getCompletionRate(), minCompletionRate) >= 0;
+        };
+    }
 
     public interface RequiredInput {
         Double getCompletionRate();
@@ -5,6 +5,7 @@ import java.util.Objects;
 
 import com.google.common.base.Preconditions;
 import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
 import com.ncslzh.projects.criteriaengine.criterion.Criterion;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -31,8 +32,25 @@ public class MinSellOrdersTotalValueSixMonthsCriterion<
                 >= 0;
     }
 
+    /** Compares fixed-point amounts against the threshold pre-computed per scale, a primitive comparison */
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        FixedPointMoney.Threshold minSellOrdersTotalValueSixMonths = FixedPointMoney.threshold(config.getMinSellOrdersTotalValueSixMonths());
+        return input -> {
+            FixedPointMoney value = input.getSellOrdersTotalValueSixMonthsMoney();
+            Preconditions.checkArgument(Objects.nonNull(value), "SellOrderTotalValue is null");
+            return minSellOrdersTotalValueSixMonths.isMetBy(value);
+        };
+    }
+
     public interface RequiredInput {
         BigDecimal getSellOrdersTotalValueSixMonths();
+
+        /** Inputs holding fixed-point amounts should over-ride this to avoid converting */
+        default FixedPointMoney getSellOrdersTotalValueSixMonthsMoney() {
+            BigDecimal value = getSellOrdersTotalValueSixMonths();
+            return Objects.isNull(value) ? null : FixedPointMoney.of(value);
+        }
     }
 
     public interface RequiredConfig extends Criteria.CriteriaConfig {
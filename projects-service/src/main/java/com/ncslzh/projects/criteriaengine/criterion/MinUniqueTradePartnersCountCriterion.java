@@ -26,6 +26,15 @@ public class MinUniqueTradePartnersCountCriterion<
         return input.getUniqueTradePartnersCount() >= config.getMinUniqueTradePartnersCount();
     }
 
+    @Override
+    public CompiledCriterion<T> compile(@NonNull U config) {
+        int minUniqueTradePartnersCount = config.getMinUniqueTradePartnersCount();
+        return input -> {
+            Preconditions.checkArgument(Objects.nonNull(input.getUniqueTradePartnersCount()), "UniqueTradePartnersCount is null");
+            return input.getUniqueTradePartnersCount() >= minUniqueTradePartnersCount;
+        };
+    }
+
     public interface RequiredInput {
         Integer getUniqueTradePartnersCount();
     }
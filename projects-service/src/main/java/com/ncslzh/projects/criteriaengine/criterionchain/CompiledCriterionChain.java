@@ -0,0 +1,181 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import com.ncslzh.projects.criteriaengine.criterion.CompiledCriterion;
+import com.ncslzh.projects.criteriaengine.criterion.Criterion;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A {@link CriterionChain} specialised for a single config, built by {@link #compile}
+ *
+ * <ul>
+ *   <li>Criteria skipped by the config ({@link Criterion#shouldCheckCriterion} is {@code false}) are removed up front,
+ *   and only accounted for as skip counts at their position
+ *   <li>If the termination strategy terminates on skip, the chain is cut off at the first skipped criterion
+ *   <li>Each remaining criterion is {@link Criterion#compile compiled} with its config values resolved, and evaluated
+ *   from a flat array
+ *   <li>Evaluations are recorded into the {@link CriterionStats} of each criterion, and a sample of them timed, and
+ *   overall results into the {@link CriterionChainStats} of the chain
+ * </ul>
+ *
+ * Results are identical to {@link CriterionChain#checkCriteria} under the same config and strategies.
+ *
+ * @param <T> Input data against which the criteria that will be evaluated
+ * @param <U> Config the chain was compiled for
+ */
+public class CompiledCriterionChain<T, U extends Criteria.CriteriaConfig> {
+
+    /** 1 in {@code TIMING_SAMPLE_RATE} evaluations are timed for {@link CriterionStats} */
+    private static final int TIMING_SAMPLE_RATE = 64;
+
+    /** Config the chain was compiled for, compared by identity to detect config changes */
+    @Getter
+    private final U config;
+    @Getter
+    private final CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy;
+
+    private final CompiledCriterion<T>[] compiledCriteria;
+    private final CriterionStats[] criterionStats;
+    private final CriterionChainStats chainStats;
+    /** Stats of the skipped criteria positioned right before each compiled criterion */
+    private final CriterionStats[][] skippedBefore;
+    /** Stats of the skipped criteria after the last compiled criterion, up to termination */
+    private final CriterionStats[] skippedAfter;
+    /** Whether the chain was cut off at a skipped criterion, i.e. always terminates early unless an evaluated one does */
+    private final boolean terminatedOnSkip;
+
+    private final boolean terminateIfPassed;
+    private final boolean terminateIfFailed;
+
+    private CompiledCriterionChain(
+            U config,
+            CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy,
+            CompiledCriterion<T>[] compiledCriteria,
+            CriterionStats[] criterionStats,
+            CriterionChainStats chainStats,
+            CriterionStats[][] skippedBefore,
+            CriterionStats[] skippedAfter,
+            boolean terminatedOnSkip,
+            CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy) {
+        this.config = config;
+        this.resultStrategy = resultStrategy;
+        this.compiledCriteria = compiledCriteria;
+        this.criterionStats = criterionStats;
+        this.chainStats = chainStats;
+        this.skippedBefore = skippedBefore;
+        this.skippedAfter = skippedAfter;
+        this.terminatedOnSkip = terminatedOnSkip;
+        this.terminateIfPassed = terminationStrategy.shouldTerminate(CriteriaEngineEnums.CriterionExecutionResult.PASSED);
+        this.terminateIfFailed = terminationStrategy.shouldTerminate(CriteriaEngineEnums.CriterionExecutionResult.FAILED);
+    }
+
+    /**
+     * @param criterionStats stats to record evaluations into, aligned with {@code criteria}
+     * @param chainStats     stats to record overall results into
+     */
+    @SuppressWarnings("unchecked")
+    static <T, U extends Criteria.CriteriaConfig> CompiledCriterionChain<T, U> compile(
+            @NonNull List<Criterion<T, U>> criteria,
+            @NonNull List<CriterionStats> criterionStats,
+            @NonNull CriterionChainStats chainStats,
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+
+        boolean terminateIfSkipped = terminationStrategy.shouldTerminate(CriteriaEngineEnums.CriterionExecutionResult.SKIPPED);
+
+        List<CompiledCriterion<T>> compiledCriteria = new ArrayList<>(criteria.size());
+        List<CriterionStats> compiledCriterionStats = new ArrayList<>(criteria.size());
+        List<CriterionStats[]> skippedBefore = new ArrayList<>(criteria.size());
+        List<CriterionStats> pendingSkipped = new ArrayList<>();
+        boolean terminatedOnSkip = false;
+        for (int i = 0; i < criteria.size(); i++) {
+            Criterion<T, U> criterion = criteria.get(i);
+            if (!criterion.shouldCheckCriterion(config)) {
+                pendingSkipped.add(criterionStats.get(i));
+                if (terminateIfSkipped) {
+                    terminatedOnSkip = true;
+                    break;
+                }
+                continue;
+            }
+            compiledCriteria.add(criterion.compile(config));
+            compiledCriterionStats.add(criterionStats.get(i));
+            skippedBefore.add(pendingSkipped.toArray(new CriterionStats[0]));
+            pendingSkipped.clear();
+        }
+
+        return new CompiledCriterionChain<>(
+                config,
+                resultStrategy,
+                compiledCriteria.toArray(new CompiledCriterion[0]),
+                compiledCriterionStats.toArray(new CriterionStats[0]),
+                chainStats,
+                skippedBefore.toArray(new CriterionStats[0][]),
+                pendingSkipped.toArray(new CriterionStats[0]),
+                terminatedOnSkip,
+                terminationStrategy);
+    }
+
+    public CriteriaEngineEnums.CriteriaExecutionResult checkCriteria(@NonNull T input) {
+        int passedCount = 0;
+        int failedCount = 0;
+        int skippedCount = 0;
+        boolean timed = ThreadLocalRandom.current().nextInt(TIMING_SAMPLE_RATE) == 0;
+        for (int i = 0; i < compiledCriteria.length; i++) {
+            skippedCount += recordSkipped(skippedBefore[i]);
+            if (matches(i, input, timed)) {
+                passedCount++;
+                if (terminateIfPassed) {
+                    return result(passedCount, failedCount, skippedCount, true);
+                }
+            } else {
+                failedCount++;
+                if (terminateIfFailed) {
+                    return result(passedCount, failedCount, skippedCount, true);
+                }
+            }
+        }
+        skippedCount += recordSkipped(skippedAfter);
+
+        return result(passedCount, failedCount, skippedCount, terminatedOnSkip);
+    }
+
+    private CriteriaEngineEnums.CriteriaExecutionResult result(
+            int passedCount, int failedCount, int skippedCount, boolean isEarlyTermination) {
+        CriteriaEngineEnums.CriteriaExecutionResult executionResult =
+                resultStrategy.getExecutionResult(passedCount, failedCount, skippedCount);
+        chainStats.record(executionResult, isEarlyTermination);
+        return executionResult;
+    }
+
+    private static int recordSkipped(CriterionStats[] skipped) {
+        for (CriterionStats stats : skipped) {
+            stats.recordSkipped();
+        }
+        return skipped.length;
+    }
+
+    private boolean matches(int i, T input, boolean timed) {
+        if (!timed) {
+            boolean matches = compiledCriteria[i].matches(input);
+            criterionStats[i].record(matches);
+            return matches;
+        }
+
+        long start = System.nanoTime();
+        boolean matches = compiledCriteria[i].matches(input);
+        criterionStats[i].recordTimed(matches, System.nanoTime() - start);
+        return matches;
+    }
+
+    public boolean passes(@NonNull T input) {
+        return CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(checkCriteria(input));
+    }
+}
@@ -1,35 +1,210 @@
 package com.ncslzh.projects.criteriaengine.criterionchain;
 
-import java.util.LinkedList;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
 import com.ncslzh.projects.criteriaengine.criteria.Criteria;
 import com.ncslzh.projects.criteriaengine.criterion.Criterion;
 import com.ncslzh.projects.criteriaengine.dto.CriteriaEvaluationOutput;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CriterionChain<T, U extends Criteria.CriteriaConfig> {
 
-    private final List<Criterion<T, U>> criteria;
+    private static final Duration REORDER_INTERVAL = Duration.ofMinutes(1);
+    /** Configs in use at once, e.g. the live config alongside {@link ShadowEvaluator} candidates */
+    private static final int MAX_COMPILED_CONFIGS = 16;
+
+    /** Replaced as a whole when adding or reordering, so that evaluations in progress see a consistent order */
+    private volatile List<Criterion<T, U>> criteria;
     private final CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy;
+    /** Compiled for the last config used, checked before {@link #compiledChains}, see {@link #compile} */
+    private volatile CompiledCriterionChain<T, U> compiled;
+    /** Compiled per config instance, weakly keyed by identity, so that alternating configs are not recompiled */
+    private final Cache<U, CompiledCriterionChain<T, U>> compiledChains = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(MAX_COMPILED_CONFIGS)
+            .build();
+
+    private final Map<Criterion<T, U>, CriterionStats> criterionStats = new ConcurrentHashMap<>();
+    private final CriterionChainStats chainStats = new CriterionChainStats();
+    /** {@code null} until {@link #bindMetrics} */
+    private volatile CriterionChainMetrics metrics;
+
+    private volatile String traceName = CriterionChain.class.getSimpleName();
+    private volatile double traceSampleRate = 0;
+    /** {@code null} if traces do not identify inputs */
+    private volatile Function<T, String> traceKey;
+    private volatile boolean adaptiveOrdering = false;
+    private volatile long lastReorderNanos = System.nanoTime();
 
     public CriterionChain() {
-        criteria = new LinkedList<>();
+        criteria = List.of();
         terminationStrategy = CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_FAILED;
     }
 
     public CriterionChain(CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy) {
-        criteria = new LinkedList<>();
+        criteria = List.of();
         this.terminationStrategy = terminationStrategy;
     }
 
-    public void addCriterion(Criterion<T, U> criterion) {
-        criteria.add(criterion);
+    public synchronized void addCriterion(Criterion<T, U> criterion) {
+        List<Criterion<T, U>> added = new ArrayList<>(criteria);
+        added.add(criterion);
+        CriterionStats stats = criterionStats.computeIfAbsent(criterion, c -> new CriterionStats(c.getName()));
+        if (Objects.nonNull(metrics)) {
+            metrics.bind(stats);
+        }
+        criteria = List.copyOf(added);
+        invalidateCompiled();
+    }
+
+    /**
+     * Lets the chain periodically reorder its {@link Criterion} by observed cost and rate of terminating outcomes, see
+     * {@link CriterionStats#getRank}. Reordering only happens for strategies where the order does not affect the
+     * result, see {@link CriteriaEngineEnums.CriterionExecutionTerminationStrategy#isOrderIndependent}, and only
+     * affects performance. Detailed outputs list {@link Criterion} in their current order.
+     */
+    public void enableAdaptiveOrdering() {
+        adaptiveOrdering = true;
+    }
+
+    /**
+     * Exports the {@link CriterionStats} of each {@link Criterion} and the {@link CriterionChainStats} of this chain
+     * as metrics tagged with {@code criteriaName}, see {@link CriterionChainMetrics}. To be called once.
+     *
+     * <p>Only evaluations through {@link #checkCriteriaResult}, {@link #checkCriteriaBatch} and
+     * {@link #checkCriteriaParallel} are recorded, including those traced because of {@code isDebugLog}. The detailed
+     * {@link #checkCriteria} is not, as it also serves evaluations that are not live traffic, e.g. {@link ShadowEvaluator}
+     * candidates, and neither is {@link #checkCriteriaBatchOffline}.
+     */
+    public synchronized void bindMetrics(@NonNull String criteriaName, @NonNull MeterRegistry meterRegistry) {
+        Preconditions.checkState(Objects.isNull(metrics), "Metrics already bound");
+        CriterionChainMetrics chainMetrics = new CriterionChainMetrics(criteriaName, meterRegistry);
+        chainMetrics.bind(chainStats);
+        criteria.forEach(criterion -> chainMetrics.bind(criterionStats.get(criterion)));
+        metrics = chainMetrics;
+    }
+
+    /**
+     * Logs a trace event, one line with the result of each {@link Criterion}, for a {@code sampleRate} share of the
+     * evaluations of {@link #checkCriteriaResult} and {@link #checkCriteriaBatch}, and for all of them while the config
+     * has {@code isDebugLog}.
+     *
+     * @param traceKey identifies inputs in traces, e.g. by user id, instead of logging whole inputs. Can be {@code null}
+     */
+    public void enableTracing(@NonNull String criteriaName, double sampleRate, Function<T, String> traceKey) {
+        Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "sampleRate (%s) must be within [0, 1]", sampleRate);
+        this.traceName = criteriaName;
+        this.traceKey = traceKey;
+        this.traceSampleRate = sampleRate;
+    }
+
+    /** @return observed overall results of this chain */
+    public CriterionChainStats getChainStats() {
+        return chainStats;
     }
 
+    public CriteriaEngineEnums.CriterionExecutionTerminationStrategy getTerminationStrategy() {
+        return terminationStrategy;
+    }
+
+    /** @return the {@link Criterion} of this chain, in their current order */
+    public List<Criterion<T, U>> getCriteria() {
+        return criteria;
+    }
+
+    /** @return observed stats of each {@link Criterion}, in their current order */
+    public List<CriterionStats> getCriterionStats() {
+        return criteria.stream().map(criterionStats::get).toList();
+    }
+
+    /**
+     * @return this chain compiled for {@code config}, compiled once per config instance and result strategy for as long
+     * as the config is in use. Configs must therefore not be mutated once used, which holds for configs obtained through
+     * {@link com.ncslzh.projects.placeholders.ConfigService}
+     */
+    public CompiledCriterionChain<T, U> compile(
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+
+        if (adaptiveOrdering && System.nanoTime() - lastReorderNanos >= REORDER_INTERVAL.toNanos()) {
+            reorder(resultStrategy);
+        }
+
+        CompiledCriterionChain<T, U> current = compiled;
+        if (current != null && current.getConfig() == config && current.getResultStrategy() == resultStrategy) {
+            return current;
+        }
+
+        current = compiledChains.getIfPresent(config);
+        if (current == null || current.getResultStrategy() != resultStrategy) {
+            List<Criterion<T, U>> currentCriteria = criteria;
+            current = CompiledCriterionChain.compile(
+                    currentCriteria,
+                    currentCriteria.stream().map(criterionStats::get).toList(),
+                    chainStats,
+                    config,
+                    terminationStrategy,
+                    resultStrategy);
+            compiledChains.put(config, current);
+        }
+        compiled = current;
+        return current;
+    }
+
+    private void invalidateCompiled() {
+        compiled = null;
+        compiledChains.invalidateAll();
+    }
+
+    private synchronized void reorder(CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+        if (System.nanoTime() - lastReorderNanos < REORDER_INTERVAL.toNanos()) {
+            return;
+        }
+        lastReorderNanos = System.nanoTime();
+        if (!terminationStrategy.isOrderIndependent(resultStrategy)) {
+            return;
+        }
+
+        // Stable, so criteria without enough stats keep their relative order
+        List<Criterion<T, U>> reordered = new ArrayList<>(criteria);
+        reordered.sort(Comparator.comparingDouble(criterion -> criterionStats.get(criterion).getRank(terminationStrategy)));
+        if (reordered.equals(criteria)) {
+            return;
+        }
+
+        criteria = List.copyOf(reordered);
+        invalidateCompiled();
+        log.info("[CriterionChain][Reorder] criterionStats={}", getCriterionStats());
+    }
+
+    /**
+     * Evaluates {@code input} with the detailed {@link CriteriaEvaluationOutput} of each {@link Criterion}, including
+     * execution messages. Use {@link #checkCriteriaResult} when only the overall result is needed.
+     *
+     * <p>Not recorded to the stats or metrics of this chain, see {@link #bindMetrics}.
+     */
     public CriteriaEvaluationOutput checkCriteria(@NonNull T input, @NonNull U config) {
 
         CriteriaEvaluationOutput output = new CriteriaEvaluationOutput();
@@ -51,13 +226,229 @@ public class CriterionChain<T, U extends Criteria.CriteriaConfig> {
         return output;
     }
 
+    /**
+     * Same as {@link #checkCriteria}, but every {@link Criterion} is submitted to {@code executor} at once, for
+     * criteria that do I/O or heavy computation.
+     *
+     * <p>Results are merged in declaration order, and early termination applies at the same {@link Criterion} as
+     * {@link #checkCriteria}, at which point the evaluations still in flight are cancelled. A {@link Criterion} not done
+     * by {@code deadline} counts as {@link CriteriaEngineEnums.CriterionExecutionResult#FAILED}, so that a slow check
+     * never lets an input through; the output only differs from {@link #checkCriteria} for those.
+     *
+     * <p>Evaluations are recorded to the {@link CriterionStats} and {@link CriterionChainStats} of this chain, as by
+     * {@link #checkCriteriaResult}.
+     *
+     * @param deadline for the whole evaluation, measured from this call
+     */
+    public CriteriaEvaluationOutput checkCriteriaParallel(
+            @NonNull T input,
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy,
+            @NonNull ExecutorService executor,
+            @NonNull Duration deadline) {
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        List<Criterion<T, U>> currentCriteria = criteria;
+        List<Future<CriteriaEngineEnums.CriterionExecutionResult>> futures = new ArrayList<>(currentCriteria.size());
+        for (Criterion<T, U> criterion : currentCriteria) {
+            futures.add(executor.submit(() -> criterion.matchesCriterion(input, config)));
+        }
+
+        CriteriaEvaluationOutput output = new CriteriaEvaluationOutput();
+        try {
+            for (int i = 0; i < currentCriteria.size(); i++) {
+                Criterion<T, U> criterion = currentCriteria.get(i);
+                CriteriaEngineEnums.CriterionExecutionResult executionResult =
+                        awaitResult(criterion, futures.get(i), deadlineNanos);
+                boolean isEarlyTermination = terminationStrategy.shouldTerminate(executionResult);
+                recordCriterion(criterion, executionResult);
+
+                output.updateStats(executionResult, isEarlyTermination);
+                output
+                        .getExecutionInfo()
+                        .add(buildExecutionInfo(criterion, executionResult, isEarlyTermination));
+
+                if (isEarlyTermination) {
+                    break;
+                }
+            }
+            chainStats.record(resultStrategy.getExecutionResult(output), output.hasTerminatedEarly());
+            return output;
+        } finally {
+            // No-op for those done
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private CriteriaEngineEnums.CriterionExecutionResult awaitResult(
+            Criterion<T, U> criterion,
+            Future<CriteriaEngineEnums.CriterionExecutionResult> future,
+            long deadlineNanos) {
+
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("[CriterionChain][Parallel] Deadline exceeded, treated as failed, criterion={}",
+                    criterion.getName());
+            return CriteriaEngineEnums.CriterionExecutionResult.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted evaluating " + criterion.getName(), e);
+        } catch (ExecutionException e) {
+            // Same exception as the sequential evaluation would have thrown
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Evaluates {@code input} keeping only counters, without building any {@link CriteriaEvaluationOutput} or execution
+     * messages, so that nothing is allocated per call. Evaluates the chain {@link #compile compiled} for {@code config},
+     * except for evaluations {@link #enableTracing traced}.
+     */
+    public CriteriaEngineEnums.CriteriaExecutionResult checkCriteriaResult(
+            @NonNull T input,
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+
+        if (shouldTrace(config)) {
+            return checkCriteriaTraced(input, config, resultStrategy);
+        }
+        return compile(config, resultStrategy).checkCriteria(input);
+    }
+
+    /**
+     * Evaluates many inputs against the same config, keeping only the overall result of each input.
+     *
+     * <p>{@link Criterion#shouldCheckCriterion} is resolved once per config by {@link #compile}, and no
+     * {@link CriteriaEvaluationOutput} is built. Use {@link #checkCriteria} on individual inputs where the detailed output is needed.
+     *
+     * @return bit {@code i} is set if {@code inputs.get(i)} {@link CriteriaEngineEnums.CriteriaExecutionResult#PASSED}
+     */
+    public BitSet checkCriteriaBatch(
+            @NonNull List<T> inputs,
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+
+        CompiledCriterionChain<T, U> compiledChain = compile(config, resultStrategy);
+        BitSet passed = new BitSet(inputs.size());
+        int index = 0;
+        for (T input : inputs) {
+            boolean inputPassed = shouldTrace(config)
+                    ? CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(checkCriteriaTraced(input, config, resultStrategy))
+                    : compiledChain.passes(input);
+            if (inputPassed) {
+                passed.set(index);
+            }
+            index++;
+        }
+
+        return passed;
+    }
+
+    /**
+     * Same results as {@link #checkCriteriaBatch}, for offline runs over whole populations, e.g. through
+     * {@link com.ncslzh.projects.criteriaengine.pipeline.CriteriaEvaluationPipeline}. Nothing is recorded to the stats
+     * of this chain, so that its metrics and adaptive ordering only reflect live traffic, and nothing is traced.
+     */
+    public BitSet checkCriteriaBatchOffline(
+            @NonNull List<T> inputs,
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+
+        List<Criterion<T, U>> currentCriteria = criteria;
+        CompiledCriterionChain<T, U> detachedChain = CompiledCriterionChain.compile(
+                currentCriteria,
+                currentCriteria.stream().map(criterion -> new CriterionStats(criterion.getName())).toList(),
+                new CriterionChainStats(),
+                config,
+                terminationStrategy,
+                resultStrategy);
+        BitSet passed = new BitSet(inputs.size());
+        int index = 0;
+        for (T input : inputs) {
+            if (detachedChain.passes(input)) {
+                passed.set(index);
+            }
+            index++;
+        }
+
+        return passed;
+    }
+
+    private boolean shouldTrace(U config) {
+        double sampleRate = traceSampleRate;
+        return config.isDebugLog() || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Same result and recorded stats as the compiled chain, evaluated {@link Criterion} by {@link Criterion} to log
+     * each of their results
+     */
+    private CriteriaEngineEnums.CriteriaExecutionResult checkCriteriaTraced(
+            T input,
+            U config,
+            CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+
+        long start = System.nanoTime();
+        int passedCount = 0;
+        int failedCount = 0;
+        int skippedCount = 0;
+        boolean isEarlyTermination = false;
+        StringJoiner results = new StringJoiner(", ", "[", "]");
+
+        for (Criterion<T, U> criterion : criteria) {
+            CriteriaEngineEnums.CriterionExecutionResult executionResult = criterion.matchesCriterion(input, config);
+            recordCriterion(criterion, executionResult);
+            switch (executionResult) {
+                case PASSED -> passedCount++;
+                case FAILED -> failedCount++;
+                case SKIPPED -> skippedCount++;
+            }
+            results.add(criterion.getName() + "=" + executionResult);
+
+            if (terminationStrategy.shouldTerminate(executionResult)) {
+                isEarlyTermination = true;
+                break;
+            }
+        }
+
+        CriteriaEngineEnums.CriteriaExecutionResult executionResult =
+                resultStrategy.getExecutionResult(passedCount, failedCount, skippedCount);
+        chainStats.record(executionResult, isEarlyTermination);
+
+        Function<T, String> key = traceKey;
+        log.info("[CriterionChain][Trace] criteria={}, key={}, result={}, resultStrategy={}, earlyTerminated={}, elapsedNanos={}, criterionResults={}",
+                traceName,
+                Objects.isNull(key) ? null : key.apply(input),
+                executionResult,
+                resultStrategy,
+                isEarlyTermination,
+                System.nanoTime() - start,
+                results);
+
+        return executionResult;
+    }
+
+    /** Untimed, as the compiled chain only times a sample of evaluations */
+    private void recordCriterion(Criterion<T, U> criterion, CriteriaEngineEnums.CriterionExecutionResult executionResult) {
+        CriterionStats stats = criterionStats.get(criterion);
+        switch (executionResult) {
+            case PASSED -> stats.record(true);
+            case FAILED -> stats.record(false);
+            case SKIPPED -> stats.recordSkipped();
+        }
+    }
+
     private CriteriaEvaluationOutput.ExecutionInfo buildExecutionInfo(
             Criterion<T, U> criterion,
             CriteriaEngineEnums.CriterionExecutionResult executionResult,
             boolean isEarlyTermination) {
 
         return CriteriaEvaluationOutput.ExecutionInfo.builder()
-                .className(criterion.getClass().getSimpleName())
+                .className(criterion.getName())
                 .executionResult(executionResult)
                 .executionMessage(executionResult.getExecutionMessageProvider().apply(criterion))
                 .earlyTerminated(isEarlyTermination)
@@ -76,6 +467,21 @@ public class CriterionChain<T, U extends Criteria.CriteriaConfig> {
             return this;
         }
 
+        public CriterionChain.Builder<T, U> adaptiveOrdering() {
+            criteria.enableAdaptiveOrdering();
+            return this;
+        }
+
+        public CriterionChain.Builder<T, U> metrics(String criteriaName, MeterRegistry meterRegistry) {
+            criteria.bindMetrics(criteriaName, meterRegistry);
+            return this;
+        }
+
+        public CriterionChain.Builder<T, U> tracing(String criteriaName, double sampleRate, Function<T, String> traceKey) {
+            criteria.enableTracing(criteriaName, sampleRate, traceKey);
+            return this;
+        }
+
         public CriterionChain<T, U> build() {
             return criteria;
         }
@@ -0,0 +1,75 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Exports {@link CriterionStats} and {@link CriterionChainStats} as Micrometer meters, tagged by {@code criteria}. Meters
+ * read the stats' counters when scraped, so evaluations do not pay for them.
+ *
+ * <ul>
+ *   <li>{@code criteria.criterion.evaluations} - evaluations of each criterion, tagged {@code criterion} and
+ *   {@code result=passed|failed|skipped}
+ *   <li>{@code criteria.criterion.duration} - evaluation latency of each criterion, tagged {@code criterion}, on the
+ *   sample of timed evaluations only
+ *   <li>{@code criteria.evaluations} - overall results, tagged {@code result=passed|failed}
+ *   <li>{@code criteria.early.terminations} - evaluations that terminated early, the early-termination rate being its
+ *   ratio to {@code criteria.evaluations}
+ * </ul>
+ *
+ * Evaluations through the detailed {@link CriterionChain#checkCriteria} are not counted, see
+ * {@link CriterionChain#bindMetrics}.
+ */
+final class CriterionChainMetrics {
+
+    private final String criteriaName;
+    private final MeterRegistry meterRegistry;
+
+    CriterionChainMetrics(String criteriaName, MeterRegistry meterRegistry) {
+        this.criteriaName = criteriaName;
+        this.meterRegistry = meterRegistry;
+    }
+
+    void bind(CriterionChainStats chainStats) {
+        FunctionCounter.builder("criteria.evaluations", chainStats, CriterionChainStats::getPassedCount)
+                .description("Overall results of the criteria")
+                .tag("criteria", criteriaName)
+                .tag("result", "passed")
+                .register(meterRegistry);
+        FunctionCounter.builder("criteria.evaluations", chainStats, CriterionChainStats::getFailedCount)
+                .description("Overall results of the criteria")
+                .tag("criteria", criteriaName)
+                .tag("result", "failed")
+                .register(meterRegistry);
+        FunctionCounter.builder("criteria.early.terminations", chainStats, CriterionChainStats::getEarlyTerminatedCount)
+                .description("Evaluations of the criteria that terminated early")
+                .tag("criteria", criteriaName)
+                .register(meterRegistry);
+    }
+
+    void bind(CriterionStats criterionStats) {
+        bindResult(criterionStats, "passed", CriterionStats::getPassedCount);
+        bindResult(criterionStats, "failed", CriterionStats::getFailedCount);
+        bindResult(criterionStats, "skipped", CriterionStats::getSkippedCount);
+        FunctionTimer.builder("criteria.criterion.duration", criterionStats,
+                        CriterionStats::getTimedCount, CriterionStats::getTimedNanos, TimeUnit.NANOSECONDS)
+                .description("Evaluation latency of a criterion, on a sample of evaluations")
+                .tag("criteria", criteriaName)
+                .tag("criterion", criterionStats.getCriterionName())
+                .register(meterRegistry);
+    }
+
+    private void bindResult(
+            CriterionStats criterionStats, String result, ToDoubleFunction<CriterionStats> count) {
+        FunctionCounter.builder("criteria.criterion.evaluations", criterionStats, count)
+                .description("Evaluations of a criterion")
+                .tag("criteria", criteriaName)
+                .tag("criterion", criterionStats.getCriterionName())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
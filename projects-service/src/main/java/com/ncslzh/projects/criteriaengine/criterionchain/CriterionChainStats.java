@@ -0,0 +1,58 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+
+/**
+ * Observed overall results of a {@link CriterionChain}, see {@link CriterionStats} for those of each
+ * {@link com.ncslzh.projects.criteriaengine.criterion.Criterion}
+ *
+ * <p>Only evaluations that know their {@link CriteriaEngineEnums.CriteriaExecutionResultStrategy} are recorded, i.e.
+ * {@link CriterionChain#checkCriteriaResult}, {@link CriterionChain#checkCriteriaBatch} and
+ * {@link CriterionChain#checkCriteriaParallel}.
+ */
+public class CriterionChainStats {
+
+    private final LongAdder passedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder earlyTerminatedCount = new LongAdder();
+
+    void record(CriteriaEngineEnums.CriteriaExecutionResult executionResult, boolean isEarlyTermination) {
+        if (CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(executionResult)) {
+            passedCount.increment();
+        } else {
+            failedCount.increment();
+        }
+        if (isEarlyTermination) {
+            earlyTerminatedCount.increment();
+        }
+    }
+
+    public long getEvaluatedCount() {
+        return getPassedCount() + getFailedCount();
+    }
+
+    public long getPassedCount() {
+        return passedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getEarlyTerminatedCount() {
+        return earlyTerminatedCount.sum();
+    }
+
+    public double getEarlyTerminationRate() {
+        long evaluated = getEvaluatedCount();
+        return evaluated == 0 ? 0 : (double) getEarlyTerminatedCount() / evaluated;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("evaluated=%d, passed=%d, failed=%d, earlyTerminationRate=%.4f",
+                getEvaluatedCount(), getPassedCount(), getFailedCount(), getEarlyTerminationRate());
+    }
+}
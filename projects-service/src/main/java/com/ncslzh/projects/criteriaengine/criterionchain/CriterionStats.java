@@ -0,0 +1,139 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Observed evaluations of a single {@link com.ncslzh.projects.criteriaengine.criterion.Criterion} in a
+ * {@link CriterionChain}, used to order criteria by expected cost
+ *
+ * <p>Only evaluations of the chain itself are recorded, not those of other callers of the {@code Criterion}, e.g. shadow
+ * evaluations. Cost is measured on a sample of evaluations only, as timing every evaluation would cost more than most
+ * criteria themselves.
+ *
+ * <p>Exported as metrics by {@link CriterionChain#bindMetrics}.
+ */
+public class CriterionStats {
+
+    /** Evaluations needed before the observed stats are trusted for ordering */
+    private static final long MIN_EVALUATED_COUNT = 1_000;
+
+    @Getter
+    private final String criterionName;
+
+    private final LongAdder evaluatedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    private final LongAdder timedCount = new LongAdder();
+    private final LongAdder timedNanos = new LongAdder();
+
+    CriterionStats(String criterionName) {
+        this.criterionName = criterionName;
+    }
+
+    void record(boolean matches) {
+        evaluatedCount.increment();
+        if (!matches) {
+            failedCount.increment();
+        }
+    }
+
+    void recordSkipped() {
+        skippedCount.increment();
+    }
+
+    void recordTimed(boolean matches, long elapsedNanos) {
+        record(matches);
+        timedCount.increment();
+        timedNanos.add(elapsedNanos);
+    }
+
+    /** @return evaluations that passed or failed, excluding skips */
+    public long getEvaluatedCount() {
+        return evaluatedCount.sum();
+    }
+
+    public long getPassedCount() {
+        return getEvaluatedCount() - getFailedCount();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    public long getTimedCount() {
+        return timedCount.sum();
+    }
+
+    public long getTimedNanos() {
+        return timedNanos.sum();
+    }
+
+    public double getFailureRate() {
+        long evaluated = getEvaluatedCount();
+        return evaluated == 0 ? 0 : (double) getFailedCount() / evaluated;
+    }
+
+    /** @return average cost of an evaluation in nanoseconds, {@code NaN} if none has been timed yet */
+    public double getAverageCostNanos() {
+        long timed = timedCount.sum();
+        return timed == 0 ? Double.NaN : (double) timedNanos.sum() / timed;
+    }
+
+    /**
+     * Share of observed evaluations, including skips, whose outcome terminates a chain with {@code terminationStrategy}
+     */
+    public double getTerminationRate(@NonNull CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy) {
+        long evaluated = getEvaluatedCount();
+        long skipped = getSkippedCount();
+        long observed = evaluated + skipped;
+        if (observed == 0) {
+            return 0;
+        }
+        long failed = getFailedCount();
+        long terminating = 0;
+        if (terminationStrategy.shouldTerminate(CriteriaEngineEnums.CriterionExecutionResult.PASSED)) {
+            terminating += evaluated - failed;
+        }
+        if (terminationStrategy.shouldTerminate(CriteriaEngineEnums.CriterionExecutionResult.FAILED)) {
+            terminating += failed;
+        }
+        if (terminationStrategy.shouldTerminate(CriteriaEngineEnums.CriterionExecutionResult.SKIPPED)) {
+            terminating += skipped;
+        }
+        return (double) terminating / observed;
+    }
+
+    /**
+     * Expected cost spent per termination, lower should be evaluated first. Running criteria in ascending order of this
+     * rank minimises the expected cost of a chain that terminates on the first outcome {@code terminationStrategy}
+     * terminates upon, e.g. the first failure for {@code TERMINATE_IF_FAILED} or the first pass for
+     * {@code TERMINATE_IF_PASSED}.
+     *
+     * @return {@code +Infinity} if the criterion never terminated the chain or has not been observed enough
+     */
+    double getRank(CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy) {
+        if (getEvaluatedCount() < MIN_EVALUATED_COUNT) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double terminationRate = getTerminationRate(terminationStrategy);
+        double averageCostNanos = getAverageCostNanos();
+        if (terminationRate == 0 || Double.isNaN(averageCostNanos)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return averageCostNanos / terminationRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-25s | evaluated=%d, failureRate=%.4f, averageCostNanos=%.1f",
+                criterionName, getEvaluatedCount(), getFailureRate(), getAverageCostNanos());
+    }
+}
@@ -0,0 +1,323 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import com.ncslzh.projects.criteriaengine.criterion.CompiledCriterion;
+import com.ncslzh.projects.criteriaengine.criterion.Criterion;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the last result of each {@link Criterion} of a {@link CriterionChain} per subject, e.g. per maker, so that when
+ * a few input fields of a subject change, only the {@link Criterion} that depend on them are re-evaluated.
+ *
+ * <ul>
+ *   <li>Dependencies are each {@link Criterion#inputDependencies()}, resolved once on construction
+ *   <li>Every {@link Criterion} is evaluated on a subject's first evaluation, regardless of early termination, so that
+ *   any later change can be applied
+ *   <li>The {@link CriteriaEngineEnums.CriteriaExecutionResult} is re-derived from the kept results as the chain would,
+ *   in order, stopping where its termination strategy terminates
+ *   <li>{@link OutcomeListener}s are only notified when the overall result of a subject flips
+ * </ul>
+ *
+ * Results are those of {@code config} and the chain's {@link Criterion} at construction. Build a new instance when
+ * either changes.
+ *
+ * <p>Results of a subject are computed outside of any lock and swapped in with a compare-and-set, retrying on a
+ * concurrent update of the same subject. Listeners are called after the swap, so they may call back into this chain,
+ * but concurrent updates of the same subject may be notified out of order.
+ *
+ * @param <K> Identifies subjects
+ * @param <T> Input data against which the criteria will be evaluated
+ * @param <U> Config of the criteria
+ */
+@Slf4j
+public class IncrementalCriterionChain<K, T, U extends Criteria.CriteriaConfig> {
+
+    private final List<Criterion<T, U>> criteria;
+    /** {@code null} where the {@link Criterion} is skipped by the config */
+    private final CompiledCriterion<T>[] compiledCriteria;
+    private final CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy;
+    private final CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy;
+
+    /** Indexes of the {@link Criterion} depending on each field */
+    private final Map<String, int[]> dependentCriteria;
+    /** Indexes of the {@link Criterion} with unknown dependencies, re-evaluated on every change */
+    private final int[] undeclaredCriteria;
+    /** Number of {@link Criterion} not skipped by the config */
+    private final int checkedCount;
+    /** Fields declared by any {@link Criterion}, including those skipped by the config */
+    private final Set<String> knownFields;
+
+    private final Map<K, CriteriaEngineEnums.CriterionExecutionResult[]> results = new ConcurrentHashMap<>();
+    private final List<OutcomeListener<K>> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder evaluatedCount = new LongAdder();
+    private final LongAdder avoidedCount = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public IncrementalCriterionChain(
+            @NonNull CriterionChain<T, U> criterionChain,
+            @NonNull U config,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+        this.criteria = criterionChain.getCriteria();
+        this.terminationStrategy = criterionChain.getTerminationStrategy();
+        this.resultStrategy = resultStrategy;
+
+        compiledCriteria = new CompiledCriterion[criteria.size()];
+        Map<String, List<Integer>> dependents = new HashMap<>();
+        List<Integer> undeclared = new ArrayList<>();
+        Set<String> declared = new HashSet<>();
+        for (int i = 0; i < criteria.size(); i++) {
+            Criterion<T, U> criterion = criteria.get(i);
+            declared.addAll(criterion.inputDependencies());
+            if (!criterion.shouldCheckCriterion(config)) {
+                // Skipped whatever the input
+                continue;
+            }
+            compiledCriteria[i] = criterion.compile(config);
+
+            Set<String> dependencies = criterion.inputDependencies();
+            if (dependencies.isEmpty()) {
+                undeclared.add(i);
+            }
+            for (String field : dependencies) {
+                dependents.computeIfAbsent(field, f -> new ArrayList<>()).add(i);
+            }
+        }
+
+        dependentCriteria = new HashMap<>();
+        dependents.forEach((field, indexes) -> dependentCriteria.put(field, indexes.stream().mapToInt(Integer::intValue).toArray()));
+        undeclaredCriteria = undeclared.stream().mapToInt(Integer::intValue).toArray();
+        checkedCount = (int) Arrays.stream(compiledCriteria).filter(Objects::nonNull).count();
+        knownFields = Set.copyOf(declared);
+        log.info("[IncrementalCriterionChain][Init] dependentCriteria={}, undeclaredCriteria={}",
+                dependents, undeclared.stream().map(i -> criteria.get(i).getName()).toList());
+    }
+
+    public void addListener(@NonNull OutcomeListener<K> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Evaluates every {@link Criterion} of {@code subject}, replacing any kept results
+     */
+    public CriteriaEngineEnums.CriteriaExecutionResult evaluate(@NonNull K subject, @NonNull T input) {
+        CriteriaEngineEnums.CriterionExecutionResult[] previous;
+        CriteriaEngineEnums.CriterionExecutionResult[] current;
+        do {
+            previous = results.get(subject);
+            current = evaluateAll(input);
+        } while (!swap(subject, previous, current));
+        return notifyListeners(subject, previous, current);
+    }
+
+    /**
+     * Re-evaluates only the {@link Criterion} of {@code subject} that depend on {@code changedFields}, or all of them
+     * if it has no kept results yet
+     *
+     * @param input         current input of the subject, including the changed fields
+     * @param changedFields names as in {@link Criterion#inputDependencies()}, see {@link #getKnownFields()}
+     * @throws IllegalArgumentException if a changed field is not declared by any {@link Criterion}, as a misspelt
+     *                                  field would otherwise leave the results of its dependents stale. Any field is
+     *                                  accepted if some {@link Criterion} has undeclared dependencies
+     */
+    public CriteriaEngineEnums.CriteriaExecutionResult update(
+            @NonNull K subject, @NonNull T input, @NonNull Set<String> changedFields) {
+        Preconditions.checkArgument(undeclaredCriteria.length > 0 || knownFields.containsAll(changedFields),
+                "Unknown changedFields=%s, knownFields=%s", changedFields, knownFields);
+
+        CriteriaEngineEnums.CriterionExecutionResult[] previous;
+        CriteriaEngineEnums.CriterionExecutionResult[] current;
+        int reevaluatedCount;
+        do {
+            previous = results.get(subject);
+            if (Objects.isNull(previous)) {
+                current = evaluateAll(input);
+                reevaluatedCount = checkedCount;
+            } else {
+                current = previous.clone();
+                boolean[] reevaluated = new boolean[criteria.size()];
+                for (String field : changedFields) {
+                    reevaluate(dependentCriteria.get(field), input, current, reevaluated);
+                }
+                reevaluate(undeclaredCriteria, input, current, reevaluated);
+                reevaluatedCount = countTrue(reevaluated);
+            }
+        } while (!swap(subject, previous, current));
+
+        avoidedCount.add(checkedCount - reevaluatedCount);
+        return notifyListeners(subject, previous, current);
+    }
+
+    /** @return fields that may be passed to {@link #update} */
+    public Set<String> getKnownFields() {
+        return knownFields;
+    }
+
+    /**
+     * @return the overall result of {@code subject} from its kept results, empty if it has none
+     */
+    public Optional<CriteriaEngineEnums.CriteriaExecutionResult> getResult(@NonNull K subject) {
+        return Optional.ofNullable(results.get(subject)).map(this::deriveResult);
+    }
+
+    /**
+     * @return the kept result of each {@link Criterion} of {@code subject}, by name, empty if it has none
+     */
+    public Map<String, CriteriaEngineEnums.CriterionExecutionResult> getCriterionResults(@NonNull K subject) {
+        CriteriaEngineEnums.CriterionExecutionResult[] subjectResults = results.get(subject);
+        if (Objects.isNull(subjectResults)) {
+            return Map.of();
+        }
+        Map<String, CriteriaEngineEnums.CriterionExecutionResult> criterionResults = new LinkedHashMap<>();
+        for (int i = 0; i < subjectResults.length; i++) {
+            criterionResults.put(criteria.get(i).getName(), subjectResults[i]);
+        }
+        return criterionResults;
+    }
+
+    public void remove(@NonNull K subject) {
+        results.remove(subject);
+    }
+
+    public int getSubjectCount() {
+        return results.size();
+    }
+
+    /** @return {@link Criterion} evaluations done */
+    public long getEvaluatedCount() {
+        return evaluatedCount.sum();
+    }
+
+    /** @return {@link Criterion} evaluations avoided by updates, compared to evaluating every {@link Criterion} */
+    public long getAvoidedCount() {
+        return avoidedCount.sum();
+    }
+
+    private static int countTrue(boolean[] values) {
+        int count = 0;
+        for (boolean value : values) {
+            if (value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void reevaluate(int[] indexes, T input, CriteriaEngineEnums.CriterionExecutionResult[] current, boolean[] reevaluated) {
+        if (Objects.isNull(indexes)) {
+            return;
+        }
+        for (int i : indexes) {
+            if (!reevaluated[i]) {
+                reevaluated[i] = true;
+                current[i] = evaluate(i, input);
+            }
+        }
+    }
+
+    private CriteriaEngineEnums.CriterionExecutionResult[] evaluateAll(T input) {
+        CriteriaEngineEnums.CriterionExecutionResult[] current = new CriteriaEngineEnums.CriterionExecutionResult[criteria.size()];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = evaluate(i, input);
+        }
+        return current;
+    }
+
+    /**
+     * @return {@code false} if the kept results of {@code subject} are no longer {@code previous}, i.e. another update
+     * was applied since they were read
+     */
+    private boolean swap(
+            K subject,
+            CriteriaEngineEnums.CriterionExecutionResult[] previous,
+            CriteriaEngineEnums.CriterionExecutionResult[] current) {
+        // Arrays compare by identity
+        return Objects.isNull(previous)
+                ? Objects.isNull(results.putIfAbsent(subject, current))
+                : results.replace(subject, previous, current);
+    }
+
+    private CriteriaEngineEnums.CriterionExecutionResult evaluate(int i, T input) {
+        if (Objects.isNull(compiledCriteria[i])) {
+            return CriteriaEngineEnums.CriterionExecutionResult.SKIPPED;
+        }
+        evaluatedCount.increment();
+        return compiledCriteria[i].matches(input)
+                ? CriteriaEngineEnums.CriterionExecutionResult.PASSED
+                : CriteriaEngineEnums.CriterionExecutionResult.FAILED;
+    }
+
+    private CriteriaEngineEnums.CriteriaExecutionResult notifyListeners(
+            K subject,
+            CriteriaEngineEnums.CriterionExecutionResult[] previous,
+            CriteriaEngineEnums.CriterionExecutionResult[] current) {
+
+        CriteriaEngineEnums.CriteriaExecutionResult currentResult = deriveResult(current);
+        if (Objects.isNull(previous)) {
+            return currentResult;
+        }
+
+        CriteriaEngineEnums.CriteriaExecutionResult previousResult = deriveResult(previous);
+        if (previousResult != currentResult) {
+            for (OutcomeListener<K> listener : listeners) {
+                try {
+                    listener.onOutcomeChanged(subject, previousResult, currentResult);
+                } catch (Exception e) {
+                    log.error("[IncrementalCriterionChain][Notify] Exception notifying subject={}, e={}", subject, e.getMessage());
+                }
+            }
+        }
+        return currentResult;
+    }
+
+    /**
+     * Same counts as {@link CriterionChain#checkCriteria}, which stops at the first {@link Criterion} its termination
+     * strategy terminates on
+     */
+    private CriteriaEngineEnums.CriteriaExecutionResult deriveResult(CriteriaEngineEnums.CriterionExecutionResult[] subjectResults) {
+        int passedCount = 0;
+        int failedCount = 0;
+        int skippedCount = 0;
+        for (CriteriaEngineEnums.CriterionExecutionResult executionResult : subjectResults) {
+            switch (executionResult) {
+                case PASSED -> passedCount++;
+                case FAILED -> failedCount++;
+                case SKIPPED -> skippedCount++;
+            }
+            if (terminationStrategy.shouldTerminate(executionResult)) {
+                break;
+            }
+        }
+        return resultStrategy.getExecutionResult(passedCount, failedCount, skippedCount);
+    }
+
+    @FunctionalInterface
+    public interface OutcomeListener<K> {
+
+        /**
+         * Called on the updating thread after the update of {@code subject} is applied, so implementations should hand
+         * off any slow work
+         */
+        void onOutcomeChanged(
+                K subject,
+                CriteriaEngineEnums.CriteriaExecutionResult previousResult,
+                CriteriaEngineEnums.CriteriaExecutionResult currentResult);
+    }
+}
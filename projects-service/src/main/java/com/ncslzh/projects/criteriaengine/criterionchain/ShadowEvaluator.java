@@ -0,0 +1,181 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import com.ncslzh.projects.criteriaengine.criterion.Criterion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Evaluates candidate configs of a {@link CriterionChain} against live inputs, off the request thread, to see the
+ * impact of a config change before making it.
+ *
+ * <p>The primary config still decides the result on the request thread; {@link #submit} only queues a sampled share of
+ * inputs onto a bounded queue, and drops them when it is full, so that shadow evaluations never add latency. Each
+ * candidate is compared with the primary config per {@link Criterion}, whatever the termination strategy, and overall.
+ *
+ * <p>Metrics, tagged by {@code criteria} and {@code candidate}:
+ * <ul>
+ *   <li>{@code criteria.shadow.evaluations} - inputs evaluated against the candidate
+ *   <li>{@code criteria.shadow.disagreements} - inputs where a {@link Criterion} differs, tagged {@code criterion}
+ *   <li>{@code criteria.shadow.outcome.disagreements} - inputs where the overall result differs, tagged {@code primary=passed|failed}
+ *   <li>{@code criteria.shadow.dropped} - inputs dropped as the queue was full, tagged by {@code criteria} only
+ * </ul>
+ *
+ * <p>Inputs are evaluated after {@link #submit} returns, so they must not be mutated afterwards. Lazy inputs not
+ * fetched by the primary evaluation are fetched on the shadow thread.
+ */
+@Slf4j
+public class ShadowEvaluator<T, U extends Criteria.CriteriaConfig> {
+
+    private final String name;
+    private final CriterionChain<T, U> criterionChain;
+    private final CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy;
+    private final MeterRegistry meterRegistry;
+
+    private final ThreadPoolExecutor executor;
+    private final Counter dropped;
+    /** Meters are cached as building them on every call allocates and looks up the registry */
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param name          tags metrics, e.g. the simple name of the {@link Criteria}
+     * @param threads       evaluating candidates
+     * @param queueCapacity inputs waiting for a thread, beyond which they are dropped
+     */
+    @Builder
+    public ShadowEvaluator(
+            @NonNull String name,
+            @NonNull CriterionChain<T, U> criterionChain,
+            @NonNull CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy,
+            @NonNull MeterRegistry meterRegistry,
+            int threads,
+            int queueCapacity) {
+        Preconditions.checkArgument(threads > 0, "threads (%s) must be > 0", threads);
+        Preconditions.checkArgument(queueCapacity > 0, "queueCapacity (%s) must be > 0", queueCapacity);
+
+        this.name = name;
+        this.criterionChain = criterionChain;
+        this.resultStrategy = resultStrategy;
+        this.meterRegistry = meterRegistry;
+
+        dropped = Counter.builder("criteria.shadow.dropped")
+                .description("Shadow evaluations dropped as the queue was full")
+                .tag("criteria", name)
+                .register(meterRegistry);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "criteria-shadow-" + name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (r, e) -> dropped.increment());
+
+        Gauge.builder("criteria.shadow.queue.depth", executor, e -> e.getQueue().size())
+                .description("Shadow evaluations waiting for a thread")
+                .tag("criteria", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues {@code input} for evaluation against each candidate, for a {@code sampleRate} share of calls. Never
+     * blocks.
+     *
+     * @param primaryConfig decided the result on the request thread
+     * @param candidates    configs to compare with {@code primaryConfig}, by name
+     * @param sampleRate    between 0 and 1
+     */
+    public void submit(@NonNull T input, @NonNull U primaryConfig, Map<String, U> candidates, double sampleRate) {
+        if (Objects.isNull(candidates) || candidates.isEmpty()
+                || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        executor.execute(() -> evaluate(input, primaryConfig, candidates));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void evaluate(T input, U primaryConfig, Map<String, U> candidates) {
+        try {
+            List<Criterion<T, U>> criteria = criterionChain.getCriteria();
+            CriteriaEngineEnums.CriterionExecutionResult[] primaryResults = new CriteriaEngineEnums.CriterionExecutionResult[criteria.size()];
+            for (int i = 0; i < criteria.size(); i++) {
+                primaryResults[i] = criteria.get(i).matchesCriterion(input, primaryConfig);
+            }
+            CriteriaEngineEnums.CriteriaExecutionResult primaryResult = overallResult(input, primaryConfig);
+
+            candidates.forEach((candidate, candidateConfig) -> {
+                evaluationCounter(candidate).increment();
+                for (int i = 0; i < criteria.size(); i++) {
+                    Criterion<T, U> criterion = criteria.get(i);
+                    if (primaryResults[i] != criterion.matchesCriterion(input, candidateConfig)) {
+                        disagreementCounter(candidate, criterion.getName()).increment();
+                    }
+                }
+                if (primaryResult != overallResult(input, candidateConfig)) {
+                    outcomeDisagreementCounter(candidate, primaryResult).increment();
+                }
+            });
+        } catch (Exception e) {
+            log.error("[ShadowEvaluator][Evaluate] Exception evaluating name={}, input={}, e={}", name, input, e.getMessage());
+        }
+    }
+
+    /**
+     * Through the uncompiled path, so that candidates do not replace the primary config compiled by the chain
+     */
+    private CriteriaEngineEnums.CriteriaExecutionResult overallResult(T input, U config) {
+        return resultStrategy.getExecutionResult(criterionChain.checkCriteria(input, config));
+    }
+
+    private Counter evaluationCounter(String candidate) {
+        return counters.computeIfAbsent("evaluations:" + candidate, key -> Counter.builder("criteria.shadow.evaluations")
+                .description("Inputs evaluated against a candidate config")
+                .tag("criteria", name)
+                .tag("candidate", candidate)
+                .register(meterRegistry));
+    }
+
+    private Counter disagreementCounter(String candidate, String criterion) {
+        return counters.computeIfAbsent("disagreements:" + candidate + ":" + criterion, key -> Counter.builder("criteria.shadow.disagreements")
+                .description("Inputs where a criterion result differs between the primary and a candidate config")
+                .tag("criteria", name)
+                .tag("candidate", candidate)
+                .tag("criterion", criterion)
+                .register(meterRegistry));
+    }
+
+    private Counter outcomeDisagreementCounter(String candidate, CriteriaEngineEnums.CriteriaExecutionResult primaryResult) {
+        String primary = primaryResult.name().toLowerCase();
+        return counters.computeIfAbsent("outcome:" + candidate + ":" + primary, key -> Counter.builder("criteria.shadow.outcome.disagreements")
+                .description("Inputs where the overall result differs between the primary and a candidate config")
+                .tag("criteria", name)
+                .tag("candidate", candidate)
+                .tag("primary", primary)
+                .register(meterRegistry));
+    }
+}
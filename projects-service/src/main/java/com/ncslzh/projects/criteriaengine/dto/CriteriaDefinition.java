@@ -0,0 +1,49 @@
+package com.ncslzh.projects.criteriaengine.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Declarative definition of a {@link Criteria}, loaded as JSON through
+ * {@link com.ncslzh.projects.placeholders.ConfigService}, e.g.
+ * <pre>
+ * {
+ *   "criteria": [
+ *     {"field": "accountAgeDays", "operator": "GTE", "threshold": 30},
+ *     {"field": "liableOrderDisputesCount", "operator": "LTE", "threshold": 2}
+ *   ],
+ *   "resultStrategy": "FAIL_IF_ANY_FAIL",
+ *   "terminationStrategy": "TERMINATE_IF_FAILED"
+ * }
+ * </pre>
+ * Fields refer to accessors registered in {@link com.ncslzh.projects.criteriaengine.criteria.CriteriaInputAccessors}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CriteriaDefinition implements Criteria.CriteriaConfig {
+
+    /** Evaluated in order */
+    private List<CriterionDefinition> criteria;
+    private CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy;
+    private CriteriaEngineEnums.CriterionExecutionTerminationStrategy terminationStrategy;
+    private Boolean isDebugLog;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CriterionDefinition {
+        private String field;
+        private CriteriaEngineEnums.ComparisonOperator operator;
+        private BigDecimal threshold;
+    }
+}
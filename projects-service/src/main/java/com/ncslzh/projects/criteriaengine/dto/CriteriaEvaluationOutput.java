@@ -25,19 +25,19 @@ public class CriteriaEvaluationOutput {
     }
 
     public boolean hasFailure() {
-        return executionStats.getFailedCount() > 0;
+        return executionStats.hasFailure();
     }
 
     public boolean hasAllFailed() {
-        return executionStats.getFailedCount() == executionInfo.size();
+        return executionStats.hasAllFailed();
     }
 
     public boolean hasSkipped() {
-        return executionStats.getSkippedCount() > 0;
+        return executionStats.hasSkipped();
     }
 
     public boolean hasAllSkipped() {
-        return executionStats.getSkippedCount() == executionInfo.size();
+        return executionStats.hasAllSkipped();
     }
 
     public void updateStats(CriteriaEngineEnums.CriterionExecutionResult executionStatus, boolean isEarlyTermination) {
@@ -71,5 +71,34 @@ public class CriteriaEvaluationOutput {
                 case SKIPPED -> skippedCount++;
             }
         }
+
+        /** Number of {@code Criterion} evaluated, i.e. excluding those not reached due to early termination */
+        public int getEvaluatedCount() {
+            return passedCount + failedCount + skippedCount;
+        }
+
+        public boolean hasFailure() {
+            return failedCount > 0;
+        }
+
+        public boolean hasAllFailed() {
+            return failedCount == getEvaluatedCount();
+        }
+
+        public boolean hasSkipped() {
+            return skippedCount > 0;
+        }
+
+        public boolean hasAllSkipped() {
+            return skippedCount == getEvaluatedCount();
+        }
+
+        /** Allows a single instance to be reused across evaluations, e.g. in batch evaluation */
+        public void reset() {
+            passedCount = 0;
+            failedCount = 0;
+            skippedCount = 0;
+            terminatedEarly = false;
+        }
     }
 }
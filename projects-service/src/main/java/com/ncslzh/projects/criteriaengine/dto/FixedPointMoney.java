@@ -0,0 +1,133 @@
+package com.ncslzh.projects.criteriaengine.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.criteriaengine.constants.CurrencyScales;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Amount of money as a fixed-point {@code units * 10^-scale}, e.g. {@code 12.34 USD} is {@code units=1234, scale=2}
+ *
+ * <p>Comparisons against a {@link Threshold} are a primitive {@code long} comparison, unlike {@link BigDecimal}s. Use
+ * {@link CurrencyScales#scaleOf(String)} as the scale of amounts in a legal currency.
+ */
+@Getter
+@EqualsAndHashCode
+public final class FixedPointMoney {
+
+    /**
+     * Rounding of amounts with more decimals than their currency's scale. Towards zero, so that an amount just below a
+     * minimum threshold is never rounded up to meet it
+     */
+    public static final RoundingMode CURRENCY_ROUNDING = RoundingMode.DOWN;
+
+    /** Largest scale {@link Threshold}s are pre-computed for */
+    private static final int MAX_THRESHOLD_SCALE = 18;
+
+    private final long units;
+    private final int scale;
+
+    private FixedPointMoney(long units, int scale) {
+        Preconditions.checkArgument(scale >= 0, "scale (%s) must be >= 0", scale);
+        this.units = units;
+        this.scale = scale;
+    }
+
+    public static FixedPointMoney ofUnits(long units, int scale) {
+        return new FixedPointMoney(units, scale);
+    }
+
+    /**
+     * @throws ArithmeticException if {@code value} has more than {@code scale} decimals, or does not fit
+     */
+    public static FixedPointMoney of(@NonNull BigDecimal value, int scale) {
+        return new FixedPointMoney(value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(), scale);
+    }
+
+    /**
+     * At the scale of the currency, see {@link CurrencyScales#scaleOf(String)}. Extra decimals, e.g. from upstream
+     * amounts such as {@code 1500.0 JPY}, are rounded with {@link #CURRENCY_ROUNDING}
+     *
+     * @throws ArithmeticException if {@code value} does not fit
+     */
+    public static FixedPointMoney of(@NonNull BigDecimal value, @NonNull String legalCurrencySymbol) {
+        int scale = CurrencyScales.scaleOf(legalCurrencySymbol);
+        return new FixedPointMoney(value.setScale(scale, CURRENCY_ROUNDING).unscaledValue().longValueExact(), scale);
+    }
+
+    /**
+     * Adapter for {@link BigDecimal} amounts, keeping their scale
+     *
+     * @throws ArithmeticException if {@code value} does not fit
+     */
+    public static FixedPointMoney of(@NonNull BigDecimal value) {
+        return of(value, Math.max(0, value.scale()));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, scale);
+    }
+
+    public static Threshold threshold(@NonNull BigDecimal value) {
+        return new Threshold(value);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    /**
+     * An amount to compare against, pre-computed for every scale up to {@link #MAX_THRESHOLD_SCALE} so that comparing
+     * an amount against it does not allocate
+     */
+    public static final class Threshold {
+
+        private final BigDecimal value;
+        /** {@code value} rounded up and down to each scale, valid where {@link #representable} is set */
+        private final long[] ceilingUnitsByScale = new long[MAX_THRESHOLD_SCALE + 1];
+        private final long[] floorUnitsByScale = new long[MAX_THRESHOLD_SCALE + 1];
+        private final boolean[] representable = new boolean[MAX_THRESHOLD_SCALE + 1];
+
+        private Threshold(BigDecimal value) {
+            this.value = value;
+            for (int scale = 0; scale <= MAX_THRESHOLD_SCALE; scale++) {
+                try {
+                    ceilingUnitsByScale[scale] = value.setScale(scale, RoundingMode.CEILING).unscaledValue().longValueExact();
+                    floorUnitsByScale[scale] = value.setScale(scale, RoundingMode.FLOOR).unscaledValue().longValueExact();
+                    representable[scale] = true;
+                } catch (ArithmeticException e) {
+                    representable[scale] = false;
+                }
+            }
+        }
+
+        public boolean isMetBy(@NonNull FixedPointMoney amount) {
+            return compareTo(amount) >= 0;
+        }
+
+        /**
+         * @return negative, zero or positive as {@code amount} is less than, equal to, or greater than this threshold
+         */
+        public int compareTo(@NonNull FixedPointMoney amount) {
+            int scale = amount.getScale();
+            if (scale > MAX_THRESHOLD_SCALE || !representable[scale]) {
+                return amount.toBigDecimal().compareTo(value);
+            }
+            // Units are integers, so below the ceiling means below the value, and above the floor means above it
+            long units = amount.getUnits();
+            if (units < ceilingUnitsByScale[scale]) {
+                return -1;
+            }
+            return units > floorUnitsByScale[scale] ? 1 : 0;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.ncslzh.projects.criteriaengine.dto;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A criteria input value that may be expensive to obtain, so that it is only fetched if a {@code Criterion} actually
+ * reaches it
+ *
+ * <ul>
+ *   <li>{@link #of(Object)} - already known
+ *   <li>{@link #lazy(Supplier)} - fetched on the calling thread on first {@link #get()}
+ *   <li>{@link #async(Supplier)} - fetched asynchronously, started by {@link #prefetch()} or on first {@link #get()},
+ *   so that independent fetches can run in parallel
+ * </ul>
+ *
+ * Values are memoized once fetched. A failed fetch is not, and is retried on the next {@link #get()}.
+ *
+ * @param <V> Type of the value
+ */
+public final class LazyValue<V> {
+
+    private final Supplier<V> loader;
+    private final Supplier<CompletableFuture<V>> asyncLoader;
+
+    private volatile CompletableFuture<V> future;
+    private volatile boolean resolved;
+    /** Published by the volatile write to {@link #resolved} */
+    private V value;
+
+    private LazyValue(V value, Supplier<V> loader, Supplier<CompletableFuture<V>> asyncLoader) {
+        this.value = value;
+        this.loader = loader;
+        this.asyncLoader = asyncLoader;
+        this.resolved = Objects.isNull(loader) && Objects.isNull(asyncLoader);
+    }
+
+    public static <V> LazyValue<V> of(V value) {
+        return new LazyValue<>(value, null, null);
+    }
+
+    public static <V> LazyValue<V> lazy(Supplier<V> loader) {
+        Preconditions.checkArgument(Objects.nonNull(loader), "loader cannot be null");
+        return new LazyValue<>(null, loader, null);
+    }
+
+    /**
+     * @param asyncLoader called at most once, unless the returned future completes exceptionally
+     */
+    public static <V> LazyValue<V> async(Supplier<CompletableFuture<V>> asyncLoader) {
+        Preconditions.checkArgument(Objects.nonNull(asyncLoader), "asyncLoader cannot be null");
+        return new LazyValue<>(null, null, asyncLoader);
+    }
+
+    public static <V> LazyValue<V> async(Supplier<V> loader, Executor executor) {
+        Preconditions.checkArgument(Objects.nonNull(loader), "loader cannot be null");
+        Preconditions.checkArgument(Objects.nonNull(executor), "executor cannot be null");
+        return async(() -> CompletableFuture.supplyAsync(loader, executor));
+    }
+
+    /**
+     * @throws RuntimeException thrown by the fetch, unwrapped from any {@link CompletionException}
+     */
+    public V get() {
+        if (!resolved) {
+            synchronized (this) {
+                if (!resolved) {
+                    value = Objects.nonNull(asyncLoader) ? join(start()) : loader.get();
+                    resolved = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Starts fetching an {@link #async} value without waiting for it, no-op for other values
+     */
+    public void prefetch() {
+        if (!resolved && Objects.nonNull(asyncLoader)) {
+            start();
+        }
+    }
+
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    private CompletableFuture<V> start() {
+        CompletableFuture<V> started = future;
+        if (Objects.isNull(started) || started.isCompletedExceptionally()) {
+            synchronized (this) {
+                started = future;
+                if (Objects.isNull(started) || started.isCompletedExceptionally()) {
+                    started = asyncLoader.get();
+                    future = started;
+                }
+            }
+        }
+        return started;
+    }
+
+    private V join(CompletableFuture<V> started) {
+        try {
+            return started.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /** Does not trigger a fetch */
+    @Override
+    public String toString() {
+        return resolved ? String.valueOf(value) : "<not fetched>";
+    }
+}
@@ -0,0 +1,20 @@
+package com.ncslzh.projects.criteriaengine.pipeline;
+
+/**
+ * Offsets of {@link CriteriaEvaluationPipeline} runs, i.e. the number of inputs from the start of their source whose
+ * results are written, so that a failed or interrupted run can be resumed
+ */
+public interface CheckpointStore {
+
+    /**
+     * @return offset of {@code runId}, {@code 0} if it has none
+     */
+    long load(String runId);
+
+    void save(String runId, long offset);
+
+    /**
+     * Called once a run completes, so that running it again starts over
+     */
+    void delete(String runId);
+}
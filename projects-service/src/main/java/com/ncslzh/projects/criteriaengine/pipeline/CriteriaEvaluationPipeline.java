@@ -0,0 +1,312 @@
+package com.ncslzh.projects.criteriaengine.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Evaluates every input of a {@link CriteriaInputSource} against a {@link Criteria}, e.g. to re-score all ad makers
+ * offline, and writes the results to a {@link CriteriaResultSink}.
+ *
+ * <ul>
+ *   <li>Inputs are read in chunks of {@code chunkSize} on the calling thread, and each chunk is evaluated with
+ *   {@link Criteria#checkCriteriaOffline} on a pool of {@code parallelism} threads, so that runs do not skew live
+ *   metrics or flood shadow evaluation
+ *   <li>At most {@code maxInFlightChunks} chunks are read but not yet written, reading blocks beyond that, so that a
+ *   slow sink bounds memory instead of being overrun
+ *   <li>Chunks are written in source order, and the offset of the last written input is checkpointed after each one,
+ *   so that a failed run resumes after it when run again with the same {@code runId}
+ *   <li>Progress and throughput are logged every {@code progressInterval}, and available through {@link #getProgress()}
+ * </ul>
+ *
+ * <p>The source and sink are closed once the run ends.
+ *
+ * @param <T> Input data against which the criteria will be evaluated
+ * @param <U> Config of the criteria
+ */
+@Slf4j
+public class CriteriaEvaluationPipeline<T, U extends Criteria.CriteriaConfig> {
+
+    private final String runId;
+    private final Criteria<T, U> criteria;
+    private final U config;
+    private final Function<T, String> idFunction;
+    private final CriteriaInputSource<T> source;
+    private final CriteriaResultSink sink;
+    /** {@code null} if runs cannot be resumed */
+    private final CheckpointStore checkpointStore;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxInFlightChunks;
+    private final Duration progressInterval;
+
+    /** Permits of chunks that may be read, released once a chunk is written or dropped */
+    private final Semaphore inFlight;
+    /** Guards the writing state below */
+    private final Object writeLock = new Object();
+    /** Evaluated chunks waiting for those before them to be written, by sequence */
+    private final Map<Long, ChunkResult> pendingWrites = new HashMap<>();
+    private long nextToWrite = 0;
+    private volatile Throwable failure;
+
+    private volatile long startOffset;
+    private volatile long startNanos;
+    private volatile long offset;
+    private volatile long passedCount;
+    private volatile long failedCount;
+
+    /**
+     * @param runId            identifies the run in checkpoints and logs
+     * @param idFunction       identifies each input in the sink, e.g. by user id
+     * @param checkpointStore  optional, to resume failed runs
+     * @param progressInterval between progress logs
+     */
+    @Builder
+    public CriteriaEvaluationPipeline(
+            @NonNull String runId,
+            @NonNull Criteria<T, U> criteria,
+            @NonNull U config,
+            @NonNull Function<T, String> idFunction,
+            @NonNull CriteriaInputSource<T> source,
+            @NonNull CriteriaResultSink sink,
+            CheckpointStore checkpointStore,
+            int chunkSize,
+            int parallelism,
+            int maxInFlightChunks,
+            @NonNull Duration progressInterval) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize (%s) must be > 0", chunkSize);
+        Preconditions.checkArgument(parallelism > 0, "parallelism (%s) must be > 0", parallelism);
+        Preconditions.checkArgument(maxInFlightChunks >= parallelism,
+                "maxInFlightChunks (%s) must be >= parallelism (%s)", maxInFlightChunks, parallelism);
+        Preconditions.checkArgument(!progressInterval.isNegative() && !progressInterval.isZero(), "progressInterval must be positive");
+
+        this.runId = runId;
+        this.criteria = criteria;
+        this.config = config;
+        this.idFunction = idFunction;
+        this.source = source;
+        this.sink = sink;
+        this.checkpointStore = checkpointStore;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.maxInFlightChunks = maxInFlightChunks;
+        this.progressInterval = progressInterval;
+        this.inFlight = new Semaphore(maxInFlightChunks);
+    }
+
+    /**
+     * Runs the pipeline to completion, resuming from the last checkpoint of {@code runId} if any. To be called once.
+     *
+     * @return final progress
+     * @throws RuntimeException the first exception thrown by the source, criteria, sink or checkpoint store, once the
+     *                          chunks in flight are done. Results written until then are checkpointed.
+     */
+    public Progress run() {
+        startOffset = Objects.isNull(checkpointStore) ? 0 : checkpointStore.load(runId);
+        offset = startOffset;
+        startNanos = System.nanoTime();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                parallelism,
+                parallelism,
+                0L,
+                TimeUnit.MILLISECONDS,
+                // Bounded by inFlight
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "criteria-pipeline-" + runId + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ScheduledExecutorService progressReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "criteria-pipeline-" + runId + "-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progressReporter.scheduleAtFixedRate(
+                () -> log.info("[CriteriaPipeline][Progress] {}", getProgress()),
+                progressInterval.toMillis(),
+                progressInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+
+        try (source; sink) {
+            try {
+                read(executor);
+                // Every permit is back once all chunks are written or dropped
+                inFlight.acquire(maxInFlightChunks);
+                inFlight.release(maxInFlightChunks);
+            } catch (RuntimeException | Error e) {
+                // Thrown by the source, so that chunks in flight are dropped and the run fails with it
+                fail(e);
+            } finally {
+                // Chunks may still be in flight if reading failed or was interrupted, so the sink is only closed once no
+                // worker can write to it
+                executor.shutdownNow();
+                Uninterruptibles.awaitTerminationUninterruptibly(executor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted running " + runId, e);
+        } finally {
+            progressReporter.shutdownNow();
+        }
+
+        Progress progress = getProgress();
+        if (Objects.nonNull(failure)) {
+            log.error("[CriteriaPipeline][Run] Failed runId={}, progress={}, e={}", runId, progress, failure.getMessage());
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed running " + runId, failure);
+        }
+
+        if (Objects.nonNull(checkpointStore)) {
+            checkpointStore.delete(runId);
+        }
+        log.info("[CriteriaPipeline][Run] Completed runId={}, progress={}", runId, progress);
+        return progress;
+    }
+
+    /**
+     * Reads chunks on the calling thread and submits them to {@code executor}, until the source is exhausted or the
+     * run fails
+     */
+    private void read(ThreadPoolExecutor executor) throws InterruptedException {
+        if (startOffset > 0) {
+            log.info("[CriteriaPipeline][Run] Resuming runId={} from offset={}", runId, startOffset);
+            source.skip(startOffset);
+        }
+
+        long sequence = 0;
+        while (Objects.isNull(failure)) {
+            inFlight.acquire();
+            List<T> chunk = Objects.isNull(failure) ? source.nextChunk(chunkSize) : List.of();
+            if (chunk.isEmpty()) {
+                inFlight.release();
+                return;
+            }
+            long chunkSequence = sequence++;
+            executor.execute(() -> evaluate(chunkSequence, chunk));
+        }
+    }
+
+    public Progress getProgress() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long processed = offset - startOffset;
+        return new Progress(
+                runId,
+                startOffset,
+                offset,
+                passedCount,
+                failedCount,
+                Duration.ofNanos(elapsedNanos),
+                elapsedNanos == 0 ? 0 : processed * 1e9 / elapsedNanos);
+    }
+
+    private void evaluate(long sequence, List<T> chunk) {
+        try {
+            BitSet passed = criteria.checkCriteriaOffline(chunk, config);
+            List<String> passedIds = new ArrayList<>(passed.cardinality());
+            List<String> failedIds = new ArrayList<>(chunk.size() - passed.cardinality());
+            for (int i = 0; i < chunk.size(); i++) {
+                (passed.get(i) ? passedIds : failedIds).add(idFunction.apply(chunk.get(i)));
+            }
+            write(sequence, new ChunkResult(chunk.size(), passedIds, failedIds));
+        } catch (Throwable e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes the chunk and any following ones already evaluated, so that chunks are written in source order
+     */
+    private void write(long sequence, ChunkResult chunkResult) {
+        synchronized (writeLock) {
+            if (Objects.nonNull(failure)) {
+                inFlight.release();
+                return;
+            }
+            pendingWrites.put(sequence, chunkResult);
+            while (pendingWrites.containsKey(nextToWrite)) {
+                ChunkResult next = pendingWrites.remove(nextToWrite);
+                // Dropped by fail if this throws
+                sink.write(next.passedIds, next.failedIds);
+                offset += next.size;
+                passedCount += next.passedIds.size();
+                failedCount += next.failedIds.size();
+                if (Objects.nonNull(checkpointStore)) {
+                    checkpointStore.save(runId, offset);
+                }
+                nextToWrite++;
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Stops reading, and drops the failed chunk along with those evaluated but not written, as they cannot be written
+     * in order anymore
+     */
+    private void fail(Throwable e) {
+        synchronized (writeLock) {
+            if (Objects.isNull(failure)) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+            inFlight.release(1 + pendingWrites.size());
+            pendingWrites.clear();
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class ChunkResult {
+        private final int size;
+        private final List<String> passedIds;
+        private final List<String> failedIds;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Progress {
+        private final String runId;
+        /** Offset the run resumed from, {@code 0} if it started over */
+        private final long startOffset;
+        /** Inputs from the start of the source whose results are written */
+        private final long offset;
+        /** Since the run started or resumed, as are the other counts */
+        private final long passedCount;
+        private final long failedCount;
+        private final Duration elapsed;
+        /** Inputs written per second since the run started */
+        private final double throughputPerSecond;
+
+        @Override
+        public String toString() {
+            return String.format("runId=%s, offset=%d, passed=%d, failed=%d, elapsed=%s, throughputPerSecond=%.1f",
+                    runId, offset, passedCount, failedCount, elapsed, throughputPerSecond);
+        }
+    }
+}
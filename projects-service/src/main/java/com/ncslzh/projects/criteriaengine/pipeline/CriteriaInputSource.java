@@ -0,0 +1,34 @@
+package com.ncslzh.projects.criteriaengine.pipeline;
+
+import java.util.List;
+
+/**
+ * Inputs read by a {@link CriteriaEvaluationPipeline}, in a stable order so that a run can be resumed from an offset
+ *
+ * @param <T> Input data against which the criteria will be evaluated
+ */
+public interface CriteriaInputSource<T> extends AutoCloseable {
+
+    /**
+     * @return up to {@code maxSize} next inputs, empty once the source is exhausted
+     */
+    List<T> nextChunk(int maxSize);
+
+    /**
+     * Skips the next {@code count} inputs, when resuming a run. Implementations should override this to skip without
+     * building the inputs.
+     */
+    default void skip(long count) {
+        long remaining = count;
+        while (remaining > 0) {
+            List<T> skipped = nextChunk((int) Math.min(remaining, Integer.MAX_VALUE));
+            if (skipped.isEmpty()) {
+                return;
+            }
+            remaining -= skipped.size();
+        }
+    }
+
+    @Override
+    void close();
+}
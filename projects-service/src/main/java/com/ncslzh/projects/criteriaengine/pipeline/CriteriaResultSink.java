@@ -0,0 +1,22 @@
+package com.ncslzh.projects.criteriaengine.pipeline;
+
+import java.util.List;
+
+/**
+ * Destination of the results of a {@link CriteriaEvaluationPipeline}
+ *
+ * <p>Chunks are written in source order, by one thread at a time. A chunk is checkpointed once {@link #write} returns,
+ * so it must be durable by then. Chunks written after the last checkpoint are written again when a run is resumed, so
+ * writes should be idempotent.
+ */
+public interface CriteriaResultSink extends AutoCloseable {
+
+    /**
+     * @param passedIds ids of the inputs of the chunk that passed, in source order
+     * @param failedIds ids of the inputs of the chunk that failed, in source order
+     */
+    void write(List<String> passedIds, List<String> failedIds);
+
+    @Override
+    void close();
+}
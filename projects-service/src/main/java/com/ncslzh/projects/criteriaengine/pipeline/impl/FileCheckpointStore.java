@@ -0,0 +1,66 @@
+package com.ncslzh.projects.criteriaengine.pipeline.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.ncslzh.projects.criteriaengine.pipeline.CheckpointStore;
+import lombok.NonNull;
+
+/**
+ * Keeps checkpoints as {@code <runId>.checkpoint} files in a local directory, replaced atomically so that a crash
+ * never leaves a partial offset
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final String SUFFIX = ".checkpoint";
+
+    private final Path directory;
+
+    public FileCheckpointStore(@NonNull Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create " + directory, e);
+        }
+    }
+
+    @Override
+    public long load(@NonNull String runId) {
+        Path path = pathOf(runId);
+        try {
+            return Files.exists(path) ? Long.parseLong(Files.readString(path, StandardCharsets.UTF_8).trim()) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    @Override
+    public void save(@NonNull String runId, long offset) {
+        Path path = pathOf(runId);
+        try {
+            Path temporary = Files.writeString(directory.resolve(runId + SUFFIX + ".tmp"), String.valueOf(offset), StandardCharsets.UTF_8);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + path, e);
+        }
+    }
+
+    @Override
+    public void delete(@NonNull String runId) {
+        Path path = pathOf(runId);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete " + path, e);
+        }
+    }
+
+    private Path pathOf(String runId) {
+        return directory.resolve(runId + SUFFIX);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ncslzh.projects.criteriaengine.pipeline.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.pipeline.CriteriaResultSink;
+import lombok.NonNull;
+
+/**
+ * Appends one {@code id,PASSED} or {@code id,FAILED} line per input to a UTF-8 file, flushed after every chunk. Lines
+ * of chunks written after the last checkpoint are appended again when a run is resumed, so readers should keep the
+ * last line of each id.
+ */
+public class FileResultSink implements CriteriaResultSink {
+
+    private final Path path;
+    private final BufferedWriter writer;
+
+    public FileResultSink(@NonNull Path path) {
+        this.path = path;
+        try {
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + path, e);
+        }
+    }
+
+    @Override
+    public void write(List<String> passedIds, List<String> failedIds) {
+        try {
+            for (String id : passedIds) {
+                writeLine(id, CriteriaEngineEnums.CriteriaExecutionResult.PASSED);
+            }
+            for (String id : failedIds) {
+                writeLine(id, CriteriaEngineEnums.CriteriaExecutionResult.FAILED);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close " + path, e);
+        }
+    }
+
+    private void writeLine(String id, CriteriaEngineEnums.CriteriaExecutionResult result) throws IOException {
+        writer.write(id);
+        writer.write(',');
+        writer.write(result.name());
+        writer.newLine();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ncslzh.projects.criteriaengine.pipeline.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import com.ncslzh.projects.criteriaengine.pipeline.CriteriaInputSource;
+import lombok.NonNull;
+
+/**
+ * Reads inputs from an {@link Iterator}, e.g. over a paged database query. The iterator must return the same inputs
+ * in the same order when a run is resumed.
+ */
+public class IteratorInputSource<T> implements CriteriaInputSource<T> {
+
+    private final Iterator<T> iterator;
+    /** {@code null} if nothing needs closing */
+    private final AutoCloseable resource;
+
+    public IteratorInputSource(@NonNull Iterator<T> iterator) {
+        this(iterator, null);
+    }
+
+    /**
+     * @param resource closed with this source, e.g. the cursor backing {@code iterator}
+     */
+    public IteratorInputSource(@NonNull Iterator<T> iterator, AutoCloseable resource) {
+        this.iterator = iterator;
+        this.resource = resource;
+    }
+
+    @Override
+    public List<T> nextChunk(int maxSize) {
+        List<T> chunk = new ArrayList<>(maxSize);
+        while (chunk.size() < maxSize && iterator.hasNext()) {
+            chunk.add(iterator.next());
+        }
+        return chunk;
+    }
+
+    @Override
+    public void skip(long count) {
+        for (long i = 0; i < count && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (Objects.isNull(resource)) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to close source", e);
+        }
+    }
+}
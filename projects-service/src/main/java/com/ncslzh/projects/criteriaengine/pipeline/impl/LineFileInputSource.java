@@ -0,0 +1,69 @@
+package com.ncslzh.projects.criteriaengine.pipeline.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.ncslzh.projects.criteriaengine.pipeline.CriteriaInputSource;
+import lombok.NonNull;
+
+/**
+ * Reads one input per line of a UTF-8 file, e.g. a JSON line parsed with {@code JSON.parseObject}. Lines are only
+ * parsed once read as part of a chunk, so resuming skips lines without parsing them.
+ */
+public class LineFileInputSource<T> implements CriteriaInputSource<T> {
+
+    private final Path path;
+    private final Function<String, T> parser;
+    private final BufferedReader reader;
+
+    public LineFileInputSource(@NonNull Path path, @NonNull Function<String, T> parser) {
+        this.path = path;
+        this.parser = parser;
+        try {
+            this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open " + path, e);
+        }
+    }
+
+    @Override
+    public List<T> nextChunk(int maxSize) {
+        List<T> chunk = new ArrayList<>(maxSize);
+        String line;
+        while (chunk.size() < maxSize && (line = readLine()) != null) {
+            chunk.add(parser.apply(line));
+        }
+        return chunk;
+    }
+
+    @Override
+    public void skip(long count) {
+        for (long i = 0; i < count && readLine() != null; i++) {
+            // Skipped without parsing
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close " + path, e);
+        }
+    }
+
+    private String readLine() {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ncslzh.projects.criteriaengine.pipeline.impl;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import com.ncslzh.projects.cache.CacheService;
+import com.ncslzh.projects.criteriaengine.pipeline.CheckpointStore;
+import lombok.NonNull;
+
+/**
+ * Keeps checkpoints in Redis, so that a run can be resumed from another instance
+ */
+public class RedisCheckpointStore implements CheckpointStore {
+
+    private static final String REDIS_KEY_S = "criteria:pipeline:checkpoint:%s";
+
+    private final CacheService cacheService;
+    /** Abandoned runs are forgotten after this long */
+    private final Duration ttl;
+
+    public RedisCheckpointStore(@NonNull CacheService cacheService, @NonNull Duration ttl) {
+        this.cacheService = cacheService;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public long load(@NonNull String runId) {
+        String offset = cacheService.get(redisKey(runId));
+        return Objects.isNull(offset) ? 0 : Long.parseLong(offset);
+    }
+
+    @Override
+    public void save(@NonNull String runId, long offset) {
+        cacheService.set(redisKey(runId), String.valueOf(offset), ttl);
+    }
+
+    @Override
+    public void delete(@NonNull String runId) {
+        cacheService.delete(redisKey(runId));
+    }
+
+    private static String redisKey(String runId) {
+        return String.format(REDIS_KEY_S, runId);
+    }
+}
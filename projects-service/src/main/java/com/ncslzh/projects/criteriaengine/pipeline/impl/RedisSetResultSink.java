@@ -0,0 +1,83 @@
+package com.ncslzh.projects.criteriaengine.pipeline.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.ncslzh.projects.cache.CacheService;
+import com.ncslzh.projects.criteriaengine.pipeline.CriteriaResultSink;
+import lombok.NonNull;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+
+/**
+ * Adds the ids of passed inputs, and optionally of failed ones, to Redis sets, and removes each id from the opposite
+ * set, so that re-scoring into the same keys moves ids whose result flipped and no id is ever in both sets. Ids absent
+ * from the source are left as they are, use new keys per run to start from empty sets.
+ *
+ * <p>Each chunk is written as one pipeline of {@code SADD}s and {@code SREM}s of up to {@link #MAX_MEMBERS_PER_COMMAND}
+ * members, so that no single command blocks Redis for long.
+ */
+public class RedisSetResultSink implements CriteriaResultSink {
+
+    private static final int MAX_MEMBERS_PER_COMMAND = 1_000;
+
+    private final CacheService cacheService;
+    private final byte[] passedKey;
+    /** {@code null} if failed ids are not kept */
+    private final byte[] failedKey;
+
+    /**
+     * @param failedKey {@code null} to only keep passed ids
+     */
+    public RedisSetResultSink(@NonNull CacheService cacheService, @NonNull String passedKey, String failedKey) {
+        Preconditions.checkArgument(!passedKey.equals(failedKey), "passedKey and failedKey must differ");
+        this.cacheService = cacheService;
+        this.passedKey = passedKey.getBytes(StandardCharsets.UTF_8);
+        this.failedKey = Objects.isNull(failedKey) ? null : failedKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(List<String> passedIds, List<String> failedIds) {
+        if (passedIds.isEmpty() && failedIds.isEmpty()) {
+            return;
+        }
+        cacheService.executePipelined((RedisCallback<Object>) connection -> {
+            addSet(connection, passedKey, passedIds);
+            // Whether or not failed ids are kept, they must not stay among passed ones from an earlier run
+            removeSet(connection, passedKey, failedIds);
+            if (Objects.nonNull(failedKey)) {
+                addSet(connection, failedKey, failedIds);
+                removeSet(connection, failedKey, passedIds);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        // Nothing buffered
+    }
+
+    private static void addSet(RedisConnection connection, byte[] key, List<String> ids) {
+        for (List<String> partition : Lists.partition(ids, MAX_MEMBERS_PER_COMMAND)) {
+            connection.setCommands().sAdd(key, members(partition));
+        }
+    }
+
+    private static void removeSet(RedisConnection connection, byte[] key, List<String> ids) {
+        for (List<String> partition : Lists.partition(ids, MAX_MEMBERS_PER_COMMAND)) {
+            connection.setCommands().sRem(key, members(partition));
+        }
+    }
+
+    private static byte[][] members(List<String> ids) {
+        byte[][] members = new byte[ids.size()][];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = ids.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return members;
+    }
+}
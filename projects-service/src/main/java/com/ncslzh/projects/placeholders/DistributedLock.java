@@ -1,6 +1,28 @@
 package com.ncslzh.projects.placeholders;
 
+import java.util.function.LongConsumer;
 
 public interface DistributedLock {
+    /**
+     * Waits up to {@code lockSeconds} for the lock, then runs {@code toRun} whilst holding it.
+     * <p>The lock is leased for {@code lockSeconds} and renewed for as long as {@code toRun} runs.
+     *
+     * @throws IllegalStateException if the lock could not be acquired in time
+     */
     void runWithLock(String lockKey, int lockSeconds, Runnable toRun);
+
+    /**
+     * Runs {@code toRun} only if the lock can be acquired immediately, without waiting.
+     *
+     * @return {@code true} if {@code toRun} was run
+     */
+    boolean tryRunWithLock(String lockKey, int lockSeconds, Runnable toRun);
+
+    /**
+     * Same as above, but {@code fencedTask} is given the fencing token of this acquisition. Tokens strictly increase
+     * with every acquisition of {@code lockKey}, so downstream writes can reject a token lower than one already seen
+     * (e.g. from a holder whose lease expired during a GC pause). Tokens may restart once {@code lockKey} has not been
+     * acquired this way for a long time, see the implementation, well beyond the lifetime of any lease.
+     */
+    boolean tryRunWithLock(String lockKey, int lockSeconds, LongConsumer fencedTask);
 }
@@ -0,0 +1,253 @@
+package com.ncslzh.projects.placeholders.impl;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.ncslzh.projects.cache.CacheService;
+import com.ncslzh.projects.placeholders.DistributedLock;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link DistributedLock} on top of {@link CacheService#setIfAbsent(String, String, Duration)}
+ *
+ * <ul>
+ *   <li>Each acquisition stores a unique owner id, and is only released by a Lua compare-and-delete, so a holder whose
+ *   lease has expired can never release somebody else's lock
+ *   <li>A watchdog renews the lease every third of {@code lockSeconds} for as long as the task runs
+ *   <li>Fencing tokens are only issued for {@link #tryRunWithLock(String, int, LongConsumer)}, by an INCR in the same
+ *   Lua script as the SET NX, so a token is only ever handed out with the lock. The counter expires after
+ *   {@link #FENCING_TOKEN_TTL} without any fenced acquisition, far longer than any lease, so that counters of keys no
+ *   longer locked do not accumulate
+ *   <li>A local lock per key is tried first, so that threads contending on the same key within this instance do not
+ *   all go to Redis. Locks are weakly held, and only live for as long as some thread is using them
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RedisDistributedLock implements DistributedLock {
+
+    /** Hash tagged with the lock key, so that both are in the same slot for {@link #FENCED_ACQUIRE_SCRIPT} */
+    private static final String FENCING_TOKEN_KEY_S = "{%s}:fencingToken";
+    private static final Duration FENCING_TOKEN_TTL = Duration.ofDays(7);
+    private static final Duration RETRY_INTERVAL = Duration.ofMillis(50);
+
+    /** @return the fencing token, or 0 if the lock is held by someone else */
+    private static final byte[] FENCED_ACQUIRE_SCRIPT = ("""
+            if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+                local token = redis.call('incr', KEYS[2])
+                redis.call('pexpire', KEYS[2], ARGV[3])
+                return token
+            end
+            return 0""").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] RELEASE_SCRIPT = ("""
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('del', KEYS[1])
+            end
+            return 0""").getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] RENEW_SCRIPT = ("""
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+                return redis.call('pexpire', KEYS[1], ARGV[2])
+            end
+            return 0""").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Lazy as {@link CacheService} implementations depend on {@link DistributedLock} themselves
+     */
+    @Lazy
+    @Resource
+    private CacheService cacheServiceImpl;
+
+    /**
+     * Keyed exactly rather than striped, as a shared stripe would make unrelated keys contend with each other
+     */
+    private final LoadingCache<String, Lock> localLocks = CacheBuilder.newBuilder()
+            .weakValues()
+            .build(CacheLoader.from(lockKey -> new ReentrantLock()));
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "distributed-lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    @Override
+    public void runWithLock(String lockKey, int lockSeconds, Runnable toRun) {
+        Duration lease = Duration.ofSeconds(Math.max(1, lockSeconds));
+        long deadline = System.nanoTime() + lease.toNanos();
+
+        Lock localLock = localLocks.getUnchecked(lockKey);
+        try {
+            if (!localLock.tryLock(lease.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Timed out acquiring local lock for lockKey=" + lockKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted acquiring lock for lockKey=" + lockKey, e);
+        }
+
+        try {
+            Acquisition acquisition = tryAcquire(lockKey, lease);
+            while (Objects.isNull(acquisition)) {
+                if (System.nanoTime() >= deadline) {
+                    throw new IllegalStateException("Timed out acquiring lock for lockKey=" + lockKey);
+                }
+                sleep(RETRY_INTERVAL);
+                acquisition = tryAcquire(lockKey, lease);
+            }
+            runAndRelease(acquisition, lease, token -> toRun.run());
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryRunWithLock(String lockKey, int lockSeconds, Runnable toRun) {
+        return tryRunWithLock(lockKey, lockSeconds, false, token -> toRun.run());
+    }
+
+    @Override
+    public boolean tryRunWithLock(String lockKey, int lockSeconds, LongConsumer fencedTask) {
+        return tryRunWithLock(lockKey, lockSeconds, true, fencedTask);
+    }
+
+    private boolean tryRunWithLock(String lockKey, int lockSeconds, boolean fenced, LongConsumer fencedTask) {
+        Lock localLock = localLocks.getUnchecked(lockKey);
+        if (!localLock.tryLock()) {
+            return false;
+        }
+
+        try {
+            Duration lease = Duration.ofSeconds(Math.max(1, lockSeconds));
+            Acquisition acquisition = fenced ? tryAcquireFenced(lockKey, lease) : tryAcquire(lockKey, lease);
+            if (Objects.isNull(acquisition)) {
+                return false;
+            }
+            runAndRelease(acquisition, lease, fencedTask);
+            return true;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    /**
+     * Without a fencing token, for tasks that do not use it
+     *
+     * @return {@code null} if the lock is held by someone else
+     */
+    private Acquisition tryAcquire(String lockKey, Duration lease) {
+        String ownerId = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(cacheServiceImpl.setIfAbsent(lockKey, ownerId, lease))) {
+            return null;
+        }
+        return new Acquisition(lockKey, ownerId, 0);
+    }
+
+    /**
+     * @return {@code null} if the lock is held by someone else
+     */
+    private Acquisition tryAcquireFenced(String lockKey, Duration lease) {
+        String ownerId = UUID.randomUUID().toString();
+        Long fencingToken = eval(FENCED_ACQUIRE_SCRIPT,
+                new String[]{lockKey, String.format(FENCING_TOKEN_KEY_S, lockKey)},
+                ownerId, String.valueOf(lease.toMillis()), String.valueOf(FENCING_TOKEN_TTL.toMillis()));
+        if (Objects.isNull(fencingToken) || fencingToken == 0) {
+            return null;
+        }
+        return new Acquisition(lockKey, ownerId, fencingToken);
+    }
+
+    private void runAndRelease(Acquisition acquisition, Duration lease, LongConsumer fencedTask) {
+        long renewIntervalMillis = Math.max(1, lease.toMillis() / 3);
+        ScheduledFuture<?> renewal = watchdog.scheduleAtFixedRate(
+                () -> renew(acquisition, lease), renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+        try {
+            fencedTask.accept(acquisition.getFencingToken());
+        } finally {
+            renewal.cancel(false);
+            release(acquisition);
+        }
+    }
+
+    private void renew(Acquisition acquisition, Duration lease) {
+        try {
+            Long renewed = eval(RENEW_SCRIPT, new String[]{acquisition.getLockKey()},
+                    acquisition.getOwnerId(), String.valueOf(lease.toMillis()));
+            if (!Long.valueOf(1L).equals(renewed)) {
+                log.warn("[DistributedLock][Renew] Lock lost whilst task is running, lockKey={}, fencingToken={}",
+                        acquisition.getLockKey(), acquisition.getFencingToken());
+            }
+        } catch (Exception e) {
+            log.error("[DistributedLock][Renew] Exception renewing lockKey={}, e={}", acquisition.getLockKey(), e.getMessage());
+        }
+    }
+
+    private void release(Acquisition acquisition) {
+        try {
+            eval(RELEASE_SCRIPT, new String[]{acquisition.getLockKey()}, acquisition.getOwnerId());
+        } catch (Exception e) {
+            // Lease expires on its own
+            log.error("[DistributedLock][Release] Exception releasing lockKey={}, e={}", acquisition.getLockKey(), e.getMessage());
+        }
+    }
+
+    private Long eval(byte[] script, String[] keys, String... args) {
+        byte[][] keysAndArgs = new byte[keys.length + args.length][];
+        for (int i = 0; i < keys.length; i++) {
+            keysAndArgs[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[keys.length + i] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return cacheServiceImpl.execute((RedisConnection connection) ->
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, keys.length, keysAndArgs));
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted acquiring lock", e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Acquisition {
+        private final String lockKey;
+        private final String ownerId;
+        private final long fencingToken;
+    }
+}
@@ -0,0 +1,239 @@
+package com.ncslzh.projects.placeholders.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.google.common.base.Preconditions;
+import com.ncslzh.projects.placeholders.ConfigService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConfigService} backed by Redis, serving configs from an in-process snapshot so that {@link #of} is a map read
+ * with no I/O and no deserialization on the request path.
+ *
+ * <p>Each config is stored as JSON in the {@link #VALUES_KEY} hash, alongside a version in {@link #VERSIONS_KEY} that
+ * is bumped on every {@link #publish(String, String)}. A config is loaded in the background on first use, {@link #of}
+ * returning the default value until then, so that neither callers nor context start depend on Redis being up.
+ * Snapshots are reloaded when
+ * <ul>
+ *   <li>a change notification for the config is received on {@link #CHANGE_CHANNEL}, or
+ *   <li>the poller, running every {@link #POLL_INTERVAL}, sees a version that differs from the snapshot's. This covers
+ *   notifications missed while disconnected, as Redis pub/sub is fire-and-forget, and subscribes again if needed
+ * </ul>
+ *
+ * <p>A snapshot that fails to reload is kept until a reload succeeds.
+ *
+ * <p>The deserialized instance is shared by all callers until the config changes, and must not be mutated.
+ *
+ * <p>{@link StringRedisTemplate} is used directly rather than {@link com.ncslzh.projects.cache.CacheService}, as the
+ * cache services read their own config through this service.
+ */
+@Slf4j
+@Component
+public class RedisSnapshotConfigService implements ConfigService {
+
+    /** Hash tagged, so that both are in the same slot for {@link #PUBLISH_SCRIPT} */
+    static final String VALUES_KEY = "{config}:values";
+    static final String VERSIONS_KEY = "{config}:versions";
+    static final String CHANGE_CHANNEL = "config:changed";
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(30);
+    /**
+     * Version of a snapshot that failed to load, always differs from the version in Redis so that it is retried
+     */
+    private static final long UNLOADED_VERSION = -1L;
+
+    /** Writes the value, bumps the version and notifies at once, so that no instance reads a value without its version */
+    private static final byte[] PUBLISH_SCRIPT = ("""
+            redis.call('hset', KEYS[1], ARGV[1], ARGV[2])
+            local version = redis.call('hincrby', KEYS[2], ARGV[1], 1)
+            redis.call('publish', ARGV[3], ARGV[1])
+            return version""").getBytes(StandardCharsets.UTF_8);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /** {@code null} until subscribed, only set on {@link #pollExecutor} */
+    private volatile RedisMessageListenerContainer listenerContainer;
+    private ScheduledExecutorService pollExecutor;
+
+    @PostConstruct
+    public void init() {
+        pollExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "config-snapshot-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Subscribed in the background, as subscribing fails while Redis is down
+        pollExecutor.execute(this::listen);
+        pollExecutor.scheduleWithFixedDelay(this::poll, POLL_INTERVAL.toMillis(), POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        pollExecutor.shutdownNow();
+        pollExecutor.awaitTermination(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        if (Objects.nonNull(listenerContainer)) {
+            listenerContainer.destroy();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T of(String configName, T defaultValue, Class<T> clazz) {
+        Snapshot snapshot = snapshotOf(configName);
+        if (Objects.isNull(snapshot.json)) {
+            return defaultValue;
+        }
+
+        Object value = snapshot.typed.get(clazz);
+        if (Objects.isNull(value)) {
+            try {
+                value = snapshot.typed.computeIfAbsent(clazz, c -> JSON.parseObject(snapshot.json, c));
+            } catch (Exception e) {
+                log.error("[ConfigService][Of] Exception deserializing configName={} as {}, e={}", configName, clazz.getSimpleName(), e.getMessage());
+                return defaultValue;
+            }
+        }
+        return Objects.isNull(value) ? defaultValue : (T) value;
+    }
+
+    private Snapshot snapshotOf(String configName) {
+        Snapshot snapshot = snapshots.get(configName);
+        if (Objects.nonNull(snapshot)) {
+            return snapshot;
+        }
+        Snapshot unloaded = new Snapshot(UNLOADED_VERSION, null);
+        Snapshot previous = snapshots.putIfAbsent(configName, unloaded);
+        if (Objects.nonNull(previous)) {
+            return previous;
+        }
+        // Loaded off the request path, or by the next poll if this fails
+        pollExecutor.execute(() -> reload(configName));
+        return unloaded;
+    }
+
+    /**
+     * Stores {@code json} as the new value of {@code configName} and notifies all instances
+     */
+    public void publish(String configName, String json) {
+        Preconditions.checkArgument(StringUtils.isNotBlank(configName), "configName cannot be blank");
+        Preconditions.checkArgument(Objects.nonNull(json), "json cannot be null");
+
+        byte[][] keysAndArgs = {
+                VALUES_KEY.getBytes(StandardCharsets.UTF_8),
+                VERSIONS_KEY.getBytes(StandardCharsets.UTF_8),
+                configName.getBytes(StandardCharsets.UTF_8),
+                json.getBytes(StandardCharsets.UTF_8),
+                CHANGE_CHANNEL.getBytes(StandardCharsets.UTF_8)};
+        stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.scriptingCommands().eval(PUBLISH_SCRIPT, ReturnType.INTEGER, 2, keysAndArgs));
+    }
+
+    private void reload(String configName) {
+        if (!snapshots.containsKey(configName)) {
+            // Never read on this instance, loaded on first use
+            return;
+        }
+        Snapshot reloaded = load(configName);
+        if (reloaded.version == UNLOADED_VERSION) {
+            // Retried by the next poll
+            return;
+        }
+        Snapshot previous = snapshots.put(configName, reloaded);
+        if (Objects.isNull(previous) || previous.version != reloaded.version) {
+            log.info("[ConfigService][Reload] configName={}, version={}", configName, reloaded.version);
+        }
+    }
+
+    private Snapshot load(String configName) {
+        try {
+            List<Object> versionAndValue = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] field = configName.getBytes(StandardCharsets.UTF_8);
+                connection.hashCommands().hGet(VERSIONS_KEY.getBytes(StandardCharsets.UTF_8), field);
+                connection.hashCommands().hGet(VALUES_KEY.getBytes(StandardCharsets.UTF_8), field);
+                return null;
+            });
+            long version = NumberUtils.toLong((String) versionAndValue.get(0));
+            return new Snapshot(version, (String) versionAndValue.get(1));
+        } catch (Exception e) {
+            log.error("[ConfigService][Load] Exception loading configName={}, e={}", configName, e.getMessage());
+            return new Snapshot(UNLOADED_VERSION, null);
+        }
+    }
+
+    private void poll() {
+        listen();
+        try {
+            Map<Object, Object> versions = stringRedisTemplate.opsForHash().entries(VERSIONS_KEY);
+            snapshots.forEach((configName, snapshot) -> {
+                long version = NumberUtils.toLong((String) versions.get(configName));
+                if (version != snapshot.version) {
+                    reload(configName);
+                }
+            });
+        } catch (Exception e) {
+            log.error("[ConfigService][Poll] Exception polling config versions, e={}", e.getMessage());
+        }
+    }
+
+    /**
+     * Subscribes to {@link #CHANGE_CHANNEL} unless already subscribed, with a new container on each attempt
+     */
+    private void listen() {
+        if (Objects.nonNull(listenerContainer)) {
+            return;
+        }
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        try {
+            container.setConnectionFactory(Objects.requireNonNull(stringRedisTemplate.getConnectionFactory()));
+            container.addMessageListener(
+                    (message, pattern) -> reload(new String(message.getBody(), StandardCharsets.UTF_8)),
+                    new ChannelTopic(CHANGE_CHANNEL));
+            container.afterPropertiesSet();
+            container.start();
+            listenerContainer = container;
+        } catch (Exception e) {
+            log.error("[ConfigService][Listen] Exception subscribing to changes, retrying in {}, e={}", POLL_INTERVAL, e.getMessage());
+            try {
+                container.destroy();
+            } catch (Exception destroyException) {
+                log.warn("[ConfigService][Listen] Exception destroying listener container, e={}", destroyException.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Raw JSON of a config at a version, with its deserialized instances per requested class
+     */
+    private static class Snapshot {
+        private final long version;
+        private final String json;
+        private final Map<Class<?>, Object> typed = new ConcurrentHashMap<>();
+
+        private Snapshot(long version, String json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaDefinition;
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
+import com.ncslzh.projects.placeholders.ConfigService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link CriteriaIndex} must match exactly the definitions {@link DeclarativeCriteria} passes, one by one.
+ *
+ * <p>Definitions and inputs are random but seeded, over a narrow range of values and thresholds so that inputs often
+ * equal thresholds, including thresholds of different scales that compare equal, e.g. {@code 1} and {@code 1.0}.
+ */
+class CriteriaIndexTest {
+
+    private static final String[] FIELDS = {"count", "rate", "amount"};
+    private static final int DEFINITION_COUNT = 300;
+    private static final int INPUT_COUNT = 2_000;
+
+    /** Always returns the default, i.e. the definition each {@link DeclarativeCriteria} is built with */
+    private static final ConfigService DEFAULT_CONFIG_SERVICE = new ConfigService() {
+        @Override
+        public <T> T of(String configName, T defaultValue, Class<T> clazz) {
+            return defaultValue;
+        }
+    };
+
+    private final CriteriaInputAccessors<TestInput> accessors = new CriteriaInputAccessors<TestInput>()
+            .longField("count", TestInput::getCount)
+            .doubleField("rate", TestInput::getRate)
+            .moneyField("amount", TestInput::getAmount);
+
+    @Test
+    void matchesSameDefinitionsAsDeclarativeCriteria() {
+        Random random = new Random(20_240_601L);
+        Map<String, CriteriaDefinition> definitions = new LinkedHashMap<>();
+        for (int i = 0; i < DEFINITION_COUNT; i++) {
+            definitions.put("definition-" + i, randomDefinition(random));
+        }
+        CriteriaIndex<TestInput> criteriaIndex = new CriteriaIndex<>(definitions, accessors);
+        List<DeclarativeCriteria<TestInput>> declarativeCriteria = definitions.values().stream()
+                .map(definition -> new DeclarativeCriteria<>(DEFAULT_CONFIG_SERVICE, accessors, definition))
+                .toList();
+        List<CriteriaDefinition> definitionList = List.copyOf(definitions.values());
+
+        assertThat(criteriaIndex.getResidualCount()).isPositive().isLessThan(DEFINITION_COUNT);
+        for (int i = 0; i < INPUT_COUNT; i++) {
+            TestInput input = randomInput(random);
+            BitSet matched = criteriaIndex.matchBits(input);
+            for (int bit = 0; bit < definitionList.size(); bit++) {
+                CriteriaDefinition definition = definitionList.get(bit);
+                assertThat(matched.get(bit))
+                        .as("input=%s, definition=%s", input, definition)
+                        .isEqualTo(declarativeCriteria.get(bit).checkCriteria(input, definition));
+            }
+            assertThat(criteriaIndex.match(input)).hasSize(matched.cardinality());
+        }
+    }
+
+    @Test
+    void nullMoneyFieldThrowsForWholeMatch() {
+        CriteriaDefinition definition = new CriteriaDefinition(
+                List.of(
+                        new CriteriaDefinition.CriterionDefinition("count", CriteriaEngineEnums.ComparisonOperator.GTE, BigDecimal.TEN),
+                        new CriteriaDefinition.CriterionDefinition("amount", CriteriaEngineEnums.ComparisonOperator.GTE, BigDecimal.ONE)),
+                CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL,
+                CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_FAILED,
+                false);
+        TestInput input = new TestInput(0, 0, null);
+
+        // Terminated on count, before amount is read
+        assertThat(new DeclarativeCriteria<>(DEFAULT_CONFIG_SERVICE, accessors, definition).checkCriteria(input, definition))
+                .isFalse();
+        CriteriaIndex<TestInput> criteriaIndex = new CriteriaIndex<>(Map.of("definition", definition), accessors);
+        assertThatThrownBy(() -> criteriaIndex.match(input))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("amount is null");
+    }
+
+    private static CriteriaDefinition randomDefinition(Random random) {
+        List<CriteriaDefinition.CriterionDefinition> criteria = new ArrayList<>();
+        int criteriaCount = random.nextInt(4);
+        for (int i = 0; i < criteriaCount; i++) {
+            criteria.add(new CriteriaDefinition.CriterionDefinition(
+                    FIELDS[random.nextInt(FIELDS.length)],
+                    randomOf(random, CriteriaEngineEnums.ComparisonOperator.values()),
+                    BigDecimal.valueOf(random.nextInt(21) - 10, random.nextInt(2))));
+        }
+        // Strategies are left unset at times, for the defaults
+        return new CriteriaDefinition(
+                criteria,
+                random.nextInt(8) == 0 ? null : randomOf(random, CriteriaEngineEnums.CriteriaExecutionResultStrategy.values()),
+                random.nextInt(8) == 0 ? null : randomOf(random, CriteriaEngineEnums.CriterionExecutionTerminationStrategy.values()),
+                false);
+    }
+
+    private static TestInput randomInput(Random random) {
+        return new TestInput(
+                random.nextInt(25) - 12,
+                (random.nextInt(250) - 120) / 10.0,
+                FixedPointMoney.ofUnits(random.nextInt(250) - 120, random.nextInt(3)));
+    }
+
+    private static <E> E randomOf(Random random, E[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    private static class TestInput {
+        private final long count;
+        private final double rate;
+        private final FixedPointMoney amount;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaDefinition;
+import com.ncslzh.projects.placeholders.ConfigService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeclarativeCriteriaTest {
+
+    private final Map<String, CriteriaDefinition> configs = new HashMap<>();
+    private final ConfigService configService = new ConfigService() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T of(String configName, T defaultValue, Class<T> clazz) {
+            return (T) configs.getOrDefault(configName, (CriteriaDefinition) defaultValue);
+        }
+    };
+    private final CriteriaInputAccessors<TestInput> accessors = new CriteriaInputAccessors<TestInput>()
+            .longField("count", TestInput::getCount);
+    private final CriteriaDefinition defaultDefinition = definition("count", 0);
+    private final DeclarativeCriteria<TestInput> criteria = new DeclarativeCriteria<>(configService, accessors, defaultDefinition);
+
+    @Test
+    void invalidDefinitionFallsBackToLastValidOfSameConfigName() {
+        CriteriaDefinition live = definition("count", 10);
+        configs.put("live", live);
+        assertThat(criteria.getCriteriaConfig("live")).isSameAs(live);
+
+        // Candidates compiled since, valid or not, do not replace the fallback of the live definition
+        CriteriaDefinition candidate = definition("count", 20);
+        assertThat(criteria.checkCriteria(new TestInput(15), candidate)).isFalse();
+        CriteriaDefinition invalidCandidate = definition("unknown", 20);
+        // Evaluated as the default definition
+        assertThat(criteria.checkCriteria(new TestInput(15), invalidCandidate)).isTrue();
+
+        configs.put("live", definition("unknown", 5));
+        assertThat(criteria.getCriteriaConfig("live")).isSameAs(live);
+        // Never loaded valid, so the default
+        configs.put("other", definition("unknown", 5));
+        assertThat(criteria.getCriteriaConfig("other")).isSameAs(defaultDefinition);
+    }
+
+    private static CriteriaDefinition definition(String field, long threshold) {
+        return new CriteriaDefinition(
+                List.of(new CriteriaDefinition.CriterionDefinition(
+                        field, CriteriaEngineEnums.ComparisonOperator.GTE, BigDecimal.valueOf(threshold))),
+                null,
+                null,
+                false);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class TestInput {
+        private final long count;
+    }
+}
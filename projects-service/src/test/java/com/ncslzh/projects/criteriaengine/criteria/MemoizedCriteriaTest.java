@@ -0,0 +1,105 @@
+package com.ncslzh.projects.criteriaengine.criteria;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.ncslzh.projects.criteriaengine.dto.FixedPointMoney;
+import com.ncslzh.projects.criteriaengine.dto.LazyValue;
+import lombok.NonNull;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemoizedCriteriaTest {
+
+    private final AtomicInteger fetchCount = new AtomicInteger();
+    private final AtomicInteger evaluationCount = new AtomicInteger();
+
+    /** Reads every input, as an evaluation that is never terminated early would */
+    private final Criteria<LowQualityUsersCriteria.CriteriaInput, LowQualityUsersCriteria.CriteriaConfig> delegate =
+            new Criteria<>() {
+                @Override
+                public LowQualityUsersCriteria.CriteriaConfig getCriteriaConfig(String configName) {
+                    return new LowQualityUsersCriteria.CriteriaConfig();
+                }
+
+                @Override
+                public boolean checkCriteria(@NonNull LowQualityUsersCriteria.CriteriaInput input, LowQualityUsersCriteria.CriteriaConfig config) {
+                    evaluationCount.incrementAndGet();
+                    return input.getAccountAgeDays() >= config.getMinAccountAgeDays()
+                            && input.getCompletedOrdersCount() >= 0
+                            && input.getUniqueTradePartnersCount() >= 0
+                            && input.getCompletionRate() >= 0
+                            && input.getBuyOrdersTotalValueSixMonthsMoney().getUnits() >= 0
+                            && input.getSellOrdersTotalValueSixMonthsMoney().getUnits() >= 0
+                            && input.getLiableOrderDisputesCount() >= 0;
+                }
+            };
+
+    private final MemoizedCriteria<LowQualityUsersCriteria.CriteriaInput, LowQualityUsersCriteria.CriteriaConfig> memoizedCriteria =
+            MemoizedCriteria.<LowQualityUsersCriteria.CriteriaInput, LowQualityUsersCriteria.CriteriaConfig>builder()
+                    .delegate(delegate)
+                    .inputFunnel(LowQualityUsersCriteria.CriteriaInput.FUNNEL)
+                    .configFunnel(LowQualityUsersCriteria.CriteriaConfig.FUNNEL)
+                    .name("lowQualityUsers")
+                    .maximumSize(100)
+                    .ttl(Duration.ofMinutes(1))
+                    .build();
+
+    @Test
+    void hitDoesNotFetchLazyInputs() {
+        LowQualityUsersCriteria.CriteriaConfig config = config(30);
+
+        assertThat(memoizedCriteria.checkCriteria(lazyInput(1L), config)).isTrue();
+        assertThat(evaluationCount).hasValue(1);
+        // Fetched by the evaluation only
+        assertThat(fetchCount).hasValue(7);
+
+        fetchCount.set(0);
+        assertThat(memoizedCriteria.checkCriteria(lazyInput(1L), config)).isTrue();
+        assertThat(evaluationCount).hasValue(1);
+        assertThat(fetchCount).hasValue(0);
+    }
+
+    @Test
+    void resultsAreKeyedByUserAndThresholds() {
+        memoizedCriteria.checkCriteria(lazyInput(1L), config(30));
+        memoizedCriteria.checkCriteria(lazyInput(2L), config(30));
+        // Equal thresholds, another config instance
+        memoizedCriteria.checkCriteria(lazyInput(1L), config(30));
+        assertThat(evaluationCount).hasValue(2);
+
+        assertThat(memoizedCriteria.checkCriteria(lazyInput(1L), config(60))).isFalse();
+        assertThat(evaluationCount).hasValue(3);
+    }
+
+    private static LowQualityUsersCriteria.CriteriaConfig config(int minAccountAgeDays) {
+        LowQualityUsersCriteria.CriteriaConfig config = new LowQualityUsersCriteria.CriteriaConfig();
+        config.setMinAccountAgeDays(minAccountAgeDays);
+        return config;
+    }
+
+    private LowQualityUsersCriteria.CriteriaInput lazyInput(long userId) {
+        return LowQualityUsersCriteria.CriteriaInput.builder()
+                .accountAgeDays(counted(() -> 45))
+                .completedOrdersCount(counted(() -> 10))
+                .uniqueTradePartnersCount(counted(() -> 5))
+                .completionRate(counted(() -> 0.95))
+                .buyOrdersTotalValueSixMonths(counted(() -> FixedPointMoney.ofUnits(100_000, 2)))
+                .sellOrdersTotalValueSixMonths(counted(() -> FixedPointMoney.ofUnits(50_000, 2)))
+                .liableOrderDisputesCount(counted(() -> 0))
+                .legalCurrencySymbol("USD")
+                .userId(userId)
+                .brokerId(1)
+                .publicAdId(100L)
+                .build();
+    }
+
+    private <V> LazyValue<V> counted(Supplier<V> loader) {
+        return LazyValue.lazy(() -> {
+            fetchCount.incrementAndGet();
+            return loader.get();
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criterion.MaxLiableOrderDisputesCountCriterion;
+import com.ncslzh.projects.criteriaengine.criterion.MinAccountAgeDaysCriterion;
+import com.ncslzh.projects.criteriaengine.criterion.MinCompletedOrdersCountCriterion;
+import com.ncslzh.projects.criteriaengine.criterion.MinCompletionRateCriterion;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link CriterionChain#checkCriteriaResult} must not allocate per call once the chain is compiled for a config, see
+ * its doc comment.
+ *
+ * <p>Measured with the allocated bytes of the current thread, which include the bytes allocated by the measurement
+ * itself, so that the check is on the bytes allocated per call over many calls rather than an exact zero.
+ */
+class CriterionChainAllocationTest {
+
+    private static final int WARMUP_CALLS = 200_000;
+    private static final int MEASURED_CALLS = 1_000_000;
+    /** Well below the smallest object, so that any allocation per call fails the test */
+    private static final double MAX_BYTES_PER_CALL = 0.01;
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private CriterionChain<TestInput, TestConfig> criterionChain;
+    private TestConfig config;
+    private List<TestInput> inputs;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(), "Thread allocated memory is not supported");
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        criterionChain = new CriterionChain.Builder<TestInput, TestConfig>()
+                .addCriterion(new MinAccountAgeDaysCriterion<>())
+                .addCriterion(new MaxLiableOrderDisputesCountCriterion<>())
+                .addCriterion(new MinCompletedOrdersCountCriterion<>())
+                .addCriterion(new MinCompletionRateCriterion<>())
+                .build();
+        // Disputes are not configured, so that skips are accounted for too
+        config = new TestConfig(false, 30, null, 10, 0.9);
+        inputs = List.of(
+                new TestInput(365, 0, 100, 0.99),
+                new TestInput(7, 0, 100, 0.99),
+                new TestInput(365, 5, 3, 0.5));
+    }
+
+    @Test
+    void checkCriteriaResultDoesNotAllocate() {
+        for (CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy : List.of(
+                CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL,
+                CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_SKIP)) {
+            run(WARMUP_CALLS, resultStrategy);
+
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            int passedCount = run(MEASURED_CALLS, resultStrategy);
+            long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+            assertThat(passedCount).isPositive();
+            assertThat((double) allocatedBytes / MEASURED_CALLS)
+                    .as("bytes allocated per call, resultStrategy=%s, allocatedBytes=%d", resultStrategy, allocatedBytes)
+                    .isLessThan(MAX_BYTES_PER_CALL);
+        }
+    }
+
+    @Test
+    void checkCriteriaResultMatchesCheckCriteria() {
+        for (CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy
+                : CriteriaEngineEnums.CriteriaExecutionResultStrategy.values()) {
+            for (TestInput input : inputs) {
+                assertThat(criterionChain.checkCriteriaResult(input, config, resultStrategy))
+                        .as("input=%s, resultStrategy=%s", input, resultStrategy)
+                        .isEqualTo(resultStrategy.getExecutionResult(criterionChain.checkCriteria(input, config)));
+            }
+        }
+    }
+
+    private int run(int calls, CriteriaEngineEnums.CriteriaExecutionResultStrategy resultStrategy) {
+        int passedCount = 0;
+        for (int i = 0; i < calls; i++) {
+            if (CriteriaEngineEnums.CriteriaExecutionResult.PASSED.equals(
+                    criterionChain.checkCriteriaResult(inputs.get(i % inputs.size()), config, resultStrategy))) {
+                passedCount++;
+            }
+        }
+        return passedCount;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class TestInput implements
+            MinAccountAgeDaysCriterion.RequiredInput,
+            MaxLiableOrderDisputesCountCriterion.RequiredInput,
+            MinCompletedOrdersCountCriterion.RequiredInput,
+            MinCompletionRateCriterion.RequiredInput {
+
+        private final Integer accountAgeDays;
+        private final Integer liableOrderDisputesCount;
+        private final Integer completedOrdersCount;
+        private final Double completionRate;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class TestConfig implements
+            MinAccountAgeDaysCriterion.RequiredConfig,
+            MaxLiableOrderDisputesCountCriterion.RequiredConfig,
+            MinCompletedOrdersCountCriterion.RequiredConfig,
+            MinCompletionRateCriterion.RequiredConfig {
+
+        private final Boolean isDebugLog;
+        private final Integer minAccountAgeDays;
+        private final Integer maxLiableOrderDisputesCount;
+        private final Integer minCompletedOrdersCount;
+        private final Double minCompletionRate;
+    }
+}
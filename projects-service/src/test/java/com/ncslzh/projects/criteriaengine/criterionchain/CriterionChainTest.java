@@ -0,0 +1,136 @@
+package com.ncslzh.projects.criteriaengine.criterionchain;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.ncslzh.projects.criteriaengine.constants.CriteriaEngineEnums;
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import com.ncslzh.projects.criteriaengine.criterion.Criterion;
+import com.ncslzh.projects.criteriaengine.dto.CriteriaEvaluationOutput;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CriterionChainTest {
+
+    private static final Criteria.CriteriaConfig CONFIG = () -> false;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void checkCriteriaParallelFailsCriterionMissingDeadline() {
+        CriterionChain<Integer, Criteria.CriteriaConfig> criterionChain = new CriterionChain.Builder<Integer, Criteria.CriteriaConfig>()
+                .addCriterion(new TestCriterion("fast", true, 0))
+                .addCriterion(new TestCriterion("slow", true, 5_000))
+                .build();
+
+        CriteriaEvaluationOutput output = criterionChain.checkCriteriaParallel(
+                1, CONFIG, CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL, executor, Duration.ofMillis(100));
+
+        assertThat(output.getExecutionInfo())
+                .extracting(CriteriaEvaluationOutput.ExecutionInfo::getExecutionResult)
+                .containsExactly(CriteriaEngineEnums.CriterionExecutionResult.PASSED, CriteriaEngineEnums.CriterionExecutionResult.FAILED);
+        assertThat(CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ANY_FAIL.getExecutionResult(output))
+                .isEqualTo(CriteriaEngineEnums.CriteriaExecutionResult.FAILED);
+
+        // Recorded like the compiled chain
+        assertThat(criterionChain.getCriterionStats())
+                .extracting(CriterionStats::getEvaluatedCount, CriterionStats::getFailedCount)
+                .containsExactly(tuple(1L, 0L), tuple(1L, 1L));
+        assertThat(criterionChain.getChainStats().getFailedCount()).isEqualTo(1);
+        assertThat(criterionChain.getChainStats().getEarlyTerminatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rankFavoursCriteriaPassingMostUnderTerminateIfPassed() {
+        CriterionChain<Integer, Criteria.CriteriaConfig> criterionChain =
+                new CriterionChain<>(CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_PASSED);
+        // Same cost, the first passes 1 in 10 inputs, the second all of those reaching it
+        criterionChain.addCriterion(new ModuloCriterion("rarelyPasses", true));
+        criterionChain.addCriterion(new ModuloCriterion("oftenPasses", false));
+
+        for (int input = 0; input < 10_000; input++) {
+            criterionChain.checkCriteriaResult(input, CONFIG, CriteriaEngineEnums.CriteriaExecutionResultStrategy.FAIL_IF_ALL_FAIL);
+        }
+
+        CriterionStats rarelyPasses = criterionChain.getCriterionStats().get(0);
+        CriterionStats oftenPasses = criterionChain.getCriterionStats().get(1);
+        assertThat(rarelyPasses.getTerminationRate(CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_PASSED))
+                .isEqualTo(0.1);
+        assertThat(oftenPasses.getTerminationRate(CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_PASSED))
+                .isEqualTo(1.0);
+        // The one passing most terminates the chain soonest, so it should run first
+        assertThat(oftenPasses.getRank(CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_PASSED))
+                .isLessThan(rarelyPasses.getRank(CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_PASSED));
+        // Whereas under TERMINATE_IF_FAILED, only the one failing terminates it
+        assertThat(oftenPasses.getRank(CriteriaEngineEnums.CriterionExecutionTerminationStrategy.TERMINATE_IF_FAILED))
+                .isInfinite();
+    }
+
+    /** Passes inputs divisible by 10, or the others if not {@code divisible}, at the same cost either way */
+    @AllArgsConstructor
+    private static class ModuloCriterion implements Criterion<Integer, Criteria.CriteriaConfig> {
+
+        private final String name;
+        private final boolean divisible;
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean shouldCheckCriterion(@NonNull Criteria.CriteriaConfig config) {
+            return true;
+        }
+
+        @Override
+        public boolean matchesCriterionCore(@NonNull Integer input, @NonNull Criteria.CriteriaConfig config) {
+            int remainder = input;
+            for (int i = 0; i < 100; i++) {
+                remainder = (remainder * 31 + input) % 1_000_003;
+            }
+            return (input % 10 == 0) == divisible && remainder >= 0;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class TestCriterion implements Criterion<Integer, Criteria.CriteriaConfig> {
+
+        private final String name;
+        private final boolean matches;
+        private final long sleepMillis;
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean shouldCheckCriterion(@NonNull Criteria.CriteriaConfig config) {
+            return true;
+        }
+
+        @Override
+        public boolean matchesCriterionCore(@NonNull Integer input, @NonNull Criteria.CriteriaConfig config) {
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return matches;
+        }
+    }
+}
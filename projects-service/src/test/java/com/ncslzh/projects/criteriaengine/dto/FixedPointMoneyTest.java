@@ -0,0 +1,39 @@
+package com.ncslzh.projects.criteriaengine.dto;
+
+import java.math.BigDecimal;
+
+import com.ncslzh.projects.criteriaengine.criteria.LowQualityUsersCriteria;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FixedPointMoneyTest {
+
+    @Test
+    void ofCurrencyRoundsDownToItsScale() {
+        assertThat(FixedPointMoney.of(new BigDecimal("1500.0"), "JPY")).isEqualTo(FixedPointMoney.ofUnits(1_500, 0));
+        assertThat(FixedPointMoney.of(new BigDecimal("10.129"), "USD")).isEqualTo(FixedPointMoney.ofUnits(1_012, 2));
+        assertThat(FixedPointMoney.of(new BigDecimal("10.1"), "KWD")).isEqualTo(FixedPointMoney.ofUnits(10_100, 3));
+    }
+
+    @Test
+    void inputBuilderConvertsAmountsAtCurrencyScale() {
+        // Amounts are set before the currency, as callers may
+        LowQualityUsersCriteria.CriteriaInput input = LowQualityUsersCriteria.CriteriaInput.builder()
+                .accountAgeDays(LazyValue.of(365))
+                .completedOrdersCount(LazyValue.of(10))
+                .uniqueTradePartnersCount(LazyValue.of(5))
+                .completionRate(LazyValue.of(0.95))
+                .buyOrdersTotalValueSixMonths(new BigDecimal("1500.0"))
+                .sellOrdersTotalValueSixMonths(FixedPointMoney.ofUnits(200, 0))
+                .liableOrderDisputesCount(LazyValue.of(0))
+                .legalCurrencySymbol("JPY")
+                .userId(1L)
+                .brokerId(1)
+                .publicAdId(100L)
+                .build();
+
+        assertThat(input.getBuyOrdersTotalValueSixMonthsMoney()).isEqualTo(FixedPointMoney.ofUnits(1_500, 0));
+        assertThat(input.getSellOrdersTotalValueSixMonthsMoney()).isEqualTo(FixedPointMoney.ofUnits(200, 0));
+    }
+}
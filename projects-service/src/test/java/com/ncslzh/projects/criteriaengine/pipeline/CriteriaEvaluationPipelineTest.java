@@ -0,0 +1,94 @@
+package com.ncslzh.projects.criteriaengine.pipeline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ncslzh.projects.criteriaengine.criteria.Criteria;
+import lombok.NonNull;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CriteriaEvaluationPipelineTest {
+
+    private static final Criteria.CriteriaConfig CONFIG = () -> false;
+
+    private final AtomicBoolean sinkClosed = new AtomicBoolean();
+    private final AtomicBoolean writtenAfterClose = new AtomicBoolean();
+
+    /** Slow enough for chunks to still be evaluated when the source fails */
+    private final Criteria<Integer, Criteria.CriteriaConfig> slowCriteria = new Criteria<>() {
+        @Override
+        public Criteria.CriteriaConfig getCriteriaConfig(String configName) {
+            return CONFIG;
+        }
+
+        @Override
+        public boolean checkCriteria(@NonNull Integer input, Criteria.CriteriaConfig config) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    };
+
+    @Test
+    void sourceFailureClosesSinkOnceWorkersAreDone() {
+        CriteriaEvaluationPipeline<Integer, Criteria.CriteriaConfig> pipeline =
+                CriteriaEvaluationPipeline.<Integer, Criteria.CriteriaConfig>builder()
+                        .runId("test")
+                        .criteria(slowCriteria)
+                        .config(CONFIG)
+                        .idFunction(String::valueOf)
+                        .source(new FailingSource(3))
+                        .sink(new CriteriaResultSink() {
+                            @Override
+                            public void write(List<String> passedIds, List<String> failedIds) {
+                                writtenAfterClose.compareAndSet(false, sinkClosed.get());
+                            }
+
+                            @Override
+                            public void close() {
+                                sinkClosed.set(true);
+                            }
+                        })
+                        .chunkSize(2)
+                        .parallelism(2)
+                        .maxInFlightChunks(4)
+                        .progressInterval(Duration.ofMinutes(1))
+                        .build();
+
+        assertThatThrownBy(pipeline::run)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("source failed");
+        assertThat(sinkClosed).isTrue();
+        assertThat(writtenAfterClose).isFalse();
+    }
+
+    /** Returns {@code chunkCount} chunks, then throws */
+    private static final class FailingSource implements CriteriaInputSource<Integer> {
+
+        private final AtomicInteger remainingChunks;
+
+        private FailingSource(int chunkCount) {
+            this.remainingChunks = new AtomicInteger(chunkCount);
+        }
+
+        @Override
+        public List<Integer> nextChunk(int maxSize) {
+            if (remainingChunks.getAndDecrement() <= 0) {
+                throw new IllegalStateException("source failed");
+            }
+            return List.of(1, 2);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}